@@ -0,0 +1,146 @@
+package com.flyaway.timereward;
+
+import io.papermc.paper.event.player.AsyncChatEvent;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerCommandPreprocessEvent;
+import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Встроенное определение AFK без Essentials. Обработчики событий только
+ * записывают время последней активности, а простой проверяется лениво
+ * во время цикла наград через {@link #isIdle(Player)}. Время сессии засчитывается
+ * только до последней активности, поэтому простой, замеченный позже
+ * (при следующем движении или выходе), в наигранное время не попадает.
+ */
+public class ActivityTracker implements Listener {
+    private final TimeReward plugin;
+    private final Map<UUID, Activity> activities = new ConcurrentHashMap<>();
+    private long idleTimeoutMillis;
+
+    private static final class Activity {
+        volatile long lastActivity;
+        volatile boolean idle;
+
+        Activity(long lastActivity) {
+            this.lastActivity = lastActivity;
+        }
+    }
+
+    public ActivityTracker(TimeReward plugin, long idleTimeoutSeconds) {
+        this.plugin = plugin;
+        setIdleTimeout(idleTimeoutSeconds);
+    }
+
+    public void setIdleTimeout(long idleTimeoutSeconds) {
+        this.idleTimeoutMillis = idleTimeoutSeconds * 1000;
+    }
+
+    public void track(Player player) {
+        activities.put(player.getUniqueId(), new Activity(plugin.getClock().millis()));
+    }
+
+    public void untrack(UUID playerId) {
+        activities.remove(playerId);
+    }
+
+    /**
+     * Момент последней активности игрока в секундах или {@code defaultSeconds}, если игрок не отслеживается.
+     */
+    public long getLastActivitySeconds(UUID playerId, long defaultSeconds) {
+        Activity activity = activities.get(playerId);
+        return activity != null ? activity.lastActivity / 1000 : defaultSeconds;
+    }
+
+    /**
+     * Снимает отметку простоя, например когда AFK проверку выключили в конфиге.
+     */
+    public void clearIdle(Player player) {
+        Activity activity = activities.get(player.getUniqueId());
+        if (activity == null) return;
+
+        activity.lastActivity = plugin.getClock().millis();
+        activity.idle = false;
+    }
+
+    /**
+     * Проверяет простой игрока. При переходе в простой сессия игрока
+     * закрывается на моменте его последней активности.
+     */
+    public boolean isIdle(Player player) {
+        Activity activity = activities.get(player.getUniqueId());
+        if (activity == null) return false;
+        if (activity.idle) return true;
+
+        long lastActivity = activity.lastActivity;
+        if (plugin.getClock().millis() - lastActivity < idleTimeoutMillis) return false;
+
+        activity.idle = true;
+        plugin.getPlayerListener().setAfk(player, true, lastActivity / 1000);
+        return true;
+    }
+
+    private void markActive(Player player) {
+        Activity activity = activities.get(player.getUniqueId());
+        if (activity == null) return;
+
+        long now = plugin.getClock().millis();
+        if (!activity.idle && (now - activity.lastActivity < idleTimeoutMillis || !plugin.isRequireAfkCheck())) {
+            activity.lastActivity = now;
+            return;
+        }
+
+        // Возвращение после простоя - редкое событие, чат при этом приходит асинхронно.
+        // До переключения lastActivity не двигаем, чтобы простой не засчитался сохранением
+        if (Bukkit.isPrimaryThread()) {
+            resume(player, activity, now);
+        } else {
+            Bukkit.getScheduler().runTask(plugin, () -> resume(player, activity, now));
+        }
+    }
+
+    private void resume(Player player, Activity activity, long now) {
+        if (!activity.idle) {
+            if (now - activity.lastActivity < idleTimeoutMillis || !plugin.isRequireAfkCheck()) {
+                // Игрок уже возобновлен другим событием или AFK проверка выключена
+                activity.lastActivity = Math.max(activity.lastActivity, now);
+                return;
+            }
+            // Простой закончился раньше, чем его заметил цикл наград: закрываем сессию на последней активности
+            activity.idle = true;
+            plugin.getPlayerListener().setAfk(player, true, activity.lastActivity / 1000);
+        }
+
+        activity.lastActivity = now;
+        activity.idle = false;
+        plugin.getPlayerListener().setAfk(player, false);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerMove(PlayerMoveEvent event) {
+        markActive(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerChat(AsyncChatEvent event) {
+        markActive(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerCommand(PlayerCommandPreprocessEvent event) {
+        markActive(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerInteract(PlayerInteractEvent event) {
+        markActive(event.getPlayer());
+    }
+}
@@ -4,18 +4,26 @@ import org.bukkit.entity.Player;
 import su.nightexpress.coinsengine.api.CoinsEngineAPI;
 import su.nightexpress.coinsengine.api.currency.Currency;
 
-public class CoinsEngineHook {
+public class CoinsEngineEconomyProvider implements EconomyProvider {
     private final TimeReward plugin;
     private boolean enabled = false;
 
-    public CoinsEngineHook(TimeReward plugin) {
+    public CoinsEngineEconomyProvider(TimeReward plugin) {
         this.plugin = plugin;
     }
 
-    public void setupCoinsEngine() {
+    @Override
+    public String getName() {
+        return "coinsengine";
+    }
+
+    @Override
+    public boolean setup() {
+        enabled = false;
         try {
             if (plugin.getServer().getPluginManager().getPlugin("CoinsEngine") == null) {
                 plugin.getLogger().info("CoinsEngine не найден");
+                return false;
             }
 
             enabled = true;
@@ -24,30 +32,37 @@ public class CoinsEngineHook {
         } catch (Exception e) {
             plugin.getLogger().warning("Ошибка при подключении к CoinsEngine: " + e.getMessage());
         }
+        return enabled;
+    }
+
+    @Override
+    public void shutdown() {
+        enabled = false;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
     }
 
-    public String getCurrencySymbol(String currencyType) {
-        if (!enabled) return currencyType;
+    @Override
+    public CurrencyHandle resolveCurrency(String currencyId) {
+        if (!enabled) return null;
 
-        Currency currency = CoinsEngineAPI.getCurrency(currencyType);
+        Currency currency = CoinsEngineAPI.getCurrency(currencyId);
         if (currency == null) {
-            if (plugin.isDebug()) plugin.getLogger().warning("Валюта '" + currencyType + "' не найдена в CoinsEngine");
-            return currencyType;
+            plugin.getLogger().warning("Валюта '" + currencyId + "' не найдена в CoinsEngine");
+            return null;
         }
-        return currency.getSymbol();
+        return new CurrencyHandle(this, currencyId, currency.getSymbol(), currency);
     }
 
-    public boolean depositPlayer(Player player, double amount, String currencyType) {
+    @Override
+    public boolean deposit(Player player, CurrencyHandle currencyHandle, double amount) {
         if (!enabled) return false;
 
         try {
-            // Получаем валюту по ID
-            Currency currency = CoinsEngineAPI.getCurrency(currencyType);
-            if (currency == null) {
-                if (plugin.isDebug())
-                    plugin.getLogger().warning("Валюта '" + currencyType + "' не найдена в CoinsEngine");
-                return false;
-            }
+            Currency currency = (Currency) currencyHandle.getBackend();
 
             // Добавляем баланс игроку
             CoinsEngineAPI.addBalance(player, currency, amount);
@@ -60,8 +75,4 @@ public class CoinsEngineHook {
             return false;
         }
     }
-
-    public boolean isEnabled() {
-        return enabled;
-    }
 }
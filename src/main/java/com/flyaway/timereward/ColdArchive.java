@@ -0,0 +1,609 @@
+package com.flyaway.timereward;
+
+import org.bukkit.Bukkit;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Сжатый архив неактивных игроков. Файл только дописывается блоками gzip
+ * не больше {@link #MEMBER_RECORDS} записей, а более поздняя запись игрока заменяет предыдущие.
+ * В памяти хранится лишь компактный индекс UUID -> смещение блока с последней записью,
+ * который строится в фоне после запуска. Поврежденный хвост файла (например, после сбоя
+ * во время записи) при загрузке переносится в отдельный файл.
+ * <p>
+ * Формат строки: {@code uuid  archivedAt  totalTime  periodTime  lastSeen  coins=10,money=20} (через табуляцию).
+ */
+public class ColdArchive {
+    // Восстановление игрока распаковывает не больше одного блока
+    static final int MEMBER_RECORDS = 1000;
+
+    private final TimeReward plugin;
+    private final File file;
+    // Чтение блоков не мешает дописыванию, исключается только подмена файла при сжатии
+    private final ReadWriteLock fileLock = new ReentrantReadWriteLock();
+    private volatile CompletableFuture<Index> index = CompletableFuture.completedFuture(Index.EMPTY);
+
+    public static class Record {
+        private final UUID uuid;
+        private final long archivedAt;
+        private final PlayerData data;
+
+        public Record(UUID uuid, long archivedAt, PlayerData data) {
+            this.uuid = uuid;
+            this.archivedAt = archivedAt;
+            this.data = data;
+        }
+
+        public UUID getUuid() {
+            return uuid;
+        }
+
+        public long getArchivedAt() {
+            return archivedAt;
+        }
+
+        public PlayerData getData() {
+            return data;
+        }
+    }
+
+    public interface RecordConsumer {
+        void accept(Record record) throws IOException;
+    }
+
+    public interface ArchiveTask {
+        void run() throws IOException;
+    }
+
+    public ColdArchive(TimeReward plugin, File file) {
+        this.plugin = plugin;
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public synchronized void loadIndexAsync() {
+        if (!file.exists()) return;
+
+        CompletableFuture<Index> future = new CompletableFuture<>();
+        index = future;
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                long started = System.currentTimeMillis();
+                Index loaded = buildIndex(file, true);
+                future.complete(loaded);
+                plugin.getLogger().info("Индекс архива загружен: " + loaded.size() + " игроков за "
+                        + (System.currentTimeMillis() - started) + " мс");
+            } catch (IOException e) {
+                plugin.getLogger().severe("Ошибка при чтении архива игроков, архивация отключена: " + e.getMessage());
+                future.complete(Index.FAILED);
+            }
+        });
+    }
+
+    public int size() {
+        return index.join().size();
+    }
+
+    /**
+     * Возвращает последнюю запись игрока или null, если игрок не архивирован.
+     *
+     * @throws IOException если архив не загрузился или запись не читается: отсутствие
+     *                     записи тогда неизвестно, и создавать игрока с нуля нельзя
+     */
+    public Record find(UUID uuid) throws IOException {
+        fileLock.readLock().lock();
+        try {
+            Index current = index.join();
+            if (current.failed) throw new IOException("архив не загружен");
+            long offset = current.find(uuid);
+            if (offset < 0) return null;
+
+            String prefix = uuid + "\t";
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                 BufferedReader reader = memberReader(channel, offset)) {
+                String text;
+                while ((text = reader.readLine()) != null) {
+                    if (!text.startsWith(prefix)) continue;
+                    Record record = parse(text);
+                    if (record.getUuid().equals(uuid)) return record;
+                }
+            } catch (RuntimeException e) {
+                throw new IOException("поврежденная запись: " + e.getMessage(), e);
+            }
+            throw new IOException("запись не найдена по индексу");
+        } finally {
+            fileLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Проверяет наличие записи игрока по индексу, не читая файл.
+     */
+    public boolean contains(UUID uuid) throws IOException {
+        Index current = index.join();
+        if (current.failed) throw new IOException("архив не загружен");
+        return current.find(uuid) >= 0;
+    }
+
+    /**
+     * Выполняет задачу, пока дописывание и сжатие архива ждут ее завершения.
+     * Поиск и чтение записей при этом не блокируются.
+     */
+    public synchronized void runWithoutAppends(ArchiveTask task) throws IOException {
+        task.run();
+    }
+
+    public synchronized void append(List<Record> records) throws IOException {
+        if (records.isEmpty()) return;
+
+        Index current = index.join();
+        if (current.failed) throw new IOException("архив не загружен, запись отключена");
+
+        // Остаток неудачной записи отрезается, чтобы новые блоки шли сразу за целыми
+        if (file.exists() && file.length() > current.end) truncate(file, current.end);
+
+        long[] offsets = new long[records.size()];
+        try (MemberWriter writer = new MemberWriter(file)) {
+            for (int i = 0; i < records.size(); i++) {
+                offsets[i] = writer.write(records.get(i));
+            }
+        } catch (IOException e) {
+            truncate(file, current.end);
+            throw e;
+        }
+        Index updated = current.with(records, offsets, file.length());
+        index = CompletableFuture.completedFuture(updated);
+
+        // Устаревшие записи копятся, когда игрока архивируют повторно
+        if (updated.records > 2L * updated.size()) {
+            compact();
+        }
+    }
+
+    /**
+     * Последовательно читает актуальные записи архива, не загружая его целиком.
+     */
+    public void forEach(RecordConsumer consumer) throws IOException {
+        fileLock.readLock().lock();
+        try {
+            Index current = index.join();
+            if (current.failed) throw new IOException("архив не загружен");
+            if (!file.exists()) return;
+
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                long offset = 0;
+                while (offset < current.end) {
+                    GzipMember member = new GzipMember(channel, offset);
+                    try (BufferedReader reader = reader(member)) {
+                        String text;
+                        while ((text = reader.readLine()) != null) {
+                            if (text.isEmpty()) continue;
+                            Record record;
+                            try {
+                                record = parse(text);
+                            } catch (RuntimeException e) {
+                                continue;
+                            }
+                            if (current.find(record.getUuid()) == offset) consumer.accept(record);
+                        }
+                    }
+                    offset = member.getEnd();
+                }
+            }
+        } finally {
+            fileLock.readLock().unlock();
+        }
+    }
+
+    private void compact() throws IOException {
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        Files.deleteIfExists(temp.toPath());
+        try (MemberWriter writer = new MemberWriter(temp)) {
+            forEach(writer::write);
+        }
+        Index compacted = buildIndex(temp, false);
+
+        fileLock.writeLock().lock();
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            index = CompletableFuture.completedFuture(compacted);
+        } finally {
+            fileLock.writeLock().unlock();
+        }
+        plugin.getLogger().info("Архив игроков сжат, записей: " + compacted.size());
+    }
+
+    /**
+     * Читает блоки по порядку. На первом поврежденном блоке чтение останавливается:
+     * записи целых блоков остаются в индексе, а хвост при {@code recover} переносится в отдельный файл.
+     */
+    private Index buildIndex(File source, boolean recover) throws IOException {
+        if (!source.exists()) return Index.EMPTY;
+
+        List<Entry> entries = new ArrayList<>();
+        int records = 0;
+        long valid = 0;
+        long size;
+        try (FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+            size = channel.size();
+            while (valid < size) {
+                List<Entry> memberEntries = new ArrayList<>();
+                long memberEnd;
+                try (GzipMember member = new GzipMember(channel, valid);
+                     BufferedReader reader = reader(member)) {
+                    String text;
+                    while ((text = reader.readLine()) != null) {
+                        if (text.isEmpty()) continue;
+                        int tab = text.indexOf('\t');
+                        try {
+                            UUID uuid = UUID.fromString(tab > 0 ? text.substring(0, tab) : text);
+                            memberEntries.add(new Entry(uuid, valid, records + memberEntries.size()));
+                        } catch (IllegalArgumentException e) {
+                            plugin.getLogger().warning("Неверная запись в архиве игроков (блок со смещением " + valid + ")");
+                        }
+                    }
+                    memberEnd = member.getEnd();
+                } catch (IOException e) {
+                    if (!recover) throw e;
+                    plugin.getLogger().severe("Архив игроков поврежден со смещения " + valid + ": " + e.getMessage());
+                    break;
+                }
+                entries.addAll(memberEntries);
+                records += memberEntries.size();
+                valid = memberEnd;
+            }
+        }
+
+        if (valid < size) moveDamagedTail(source, valid, size);
+        return Index.of(entries, records, valid);
+    }
+
+    private void moveDamagedTail(File source, long valid, long size) throws IOException {
+        File damaged = new File(source.getParentFile(), source.getName() + ".damaged-" + System.currentTimeMillis());
+        try (FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(damaged.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long position = valid;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        }
+        truncate(source, valid);
+        plugin.getLogger().severe("Поврежденный хвост архива (" + (size - valid) + " байт) перенесен в " + damaged.getName()
+                + ", целые записи сохранены");
+    }
+
+    private static void truncate(File target, long length) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(target, "rw")) {
+            raf.setLength(length);
+        }
+    }
+
+    private static BufferedReader memberReader(FileChannel channel, long offset) throws IOException {
+        return reader(new GzipMember(channel, offset));
+    }
+
+    private static BufferedReader reader(InputStream in) {
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    private static String format(Record record) {
+        PlayerData data = record.getData();
+        StringBuilder builder = new StringBuilder(96)
+                .append(record.getUuid()).append('\t')
+                .append(record.getArchivedAt()).append('\t')
+                .append(data.getTotalTime()).append('\t')
+                .append(data.getPeriodTime()).append('\t')
+                .append(data.getLastSeen()).append('\t');
+        boolean first = true;
+        for (Map.Entry<String, Long> entry : data.getLastRewardTimes().entrySet()) {
+            if (!first) builder.append(',');
+            builder.append(entry.getKey()).append('=').append(entry.getValue());
+            first = false;
+        }
+        return builder.toString();
+    }
+
+    private static Record parse(String text) {
+        String[] parts = text.split("\t", -1);
+        Map<String, Long> lastRewardTimes = new HashMap<>();
+        if (parts.length > 5 && !parts[5].isEmpty()) {
+            for (String pair : parts[5].split(",")) {
+                int eq = pair.indexOf('=');
+                lastRewardTimes.put(pair.substring(0, eq), Long.parseLong(pair.substring(eq + 1)));
+            }
+        }
+        PlayerData data = new PlayerData(Long.parseLong(parts[2]), Long.parseLong(parts[3]),
+                Long.parseLong(parts[4]), lastRewardTimes);
+        return new Record(UUID.fromString(parts[0]), Long.parseLong(parts[1]), data);
+    }
+
+    /**
+     * Дописывает записи в файл, начиная новый gzip-блок каждые {@link #MEMBER_RECORDS} записей.
+     */
+    private static final class MemberWriter implements Closeable {
+        private final File target;
+        private BufferedWriter writer;
+        private long offset;
+        private int count;
+
+        MemberWriter(File target) {
+            this.target = target;
+        }
+
+        // Возвращает смещение блока, в который попала запись
+        long write(Record record) throws IOException {
+            if (writer == null || count == MEMBER_RECORDS) {
+                close();
+                offset = target.length();
+                writer = new BufferedWriter(new OutputStreamWriter(
+                        new GZIPOutputStream(new FileOutputStream(target, true)), StandardCharsets.UTF_8));
+                count = 0;
+            }
+            writer.write(format(record));
+            writer.newLine();
+            count++;
+            return offset;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (writer != null) {
+                writer.close();
+                writer = null;
+            }
+        }
+    }
+
+    /**
+     * Распаковывает один gzip-блок с заданного смещения и проверяет его контрольную сумму.
+     * После конца блока {@link #getEnd()} возвращает смещение следующего.
+     */
+    private static final class GzipMember extends InputStream {
+        private static final int FHCRC = 2;
+        private static final int FEXTRA = 4;
+        private static final int FNAME = 8;
+        private static final int FCOMMENT = 16;
+
+        private final FileChannel channel;
+        private final Inflater inflater = new Inflater(true);
+        private final CRC32 crc = new CRC32();
+        private final byte[] buffer = new byte[8192];
+        private long position;
+        private int bufferPos;
+        private int bufferLen;
+        private long end = -1;
+
+        GzipMember(FileChannel channel, long offset) throws IOException {
+            this.channel = channel;
+            this.position = offset;
+            readHeader();
+            inflater.setInput(buffer, bufferPos, bufferLen - bufferPos);
+            bufferPos = bufferLen;
+        }
+
+        long getEnd() {
+            return end;
+        }
+
+        private void fill() throws IOException {
+            int read = channel.read(ByteBuffer.wrap(buffer), position);
+            if (read <= 0) throw new EOFException("блок gzip обрезан");
+            position += read;
+            bufferPos = 0;
+            bufferLen = read;
+        }
+
+        private int readByte() throws IOException {
+            if (bufferPos == bufferLen) fill();
+            return buffer[bufferPos++] & 0xff;
+        }
+
+        private long readInt() throws IOException {
+            return readByte() | readByte() << 8 | readByte() << 16 | (long) readByte() << 24;
+        }
+
+        private void readHeader() throws IOException {
+            if (readByte() != 0x1f || readByte() != 0x8b || readByte() != 8) throw new ZipException("неверный заголовок gzip");
+            int flags = readByte();
+            for (int i = 0; i < 6; i++) readByte(); // время, флаги сжатия, ОС
+            if ((flags & FEXTRA) != 0) {
+                int length = readByte() | readByte() << 8;
+                for (int i = 0; i < length; i++) readByte();
+            }
+            if ((flags & FNAME) != 0) skipString();
+            if ((flags & FCOMMENT) != 0) skipString();
+            if ((flags & FHCRC) != 0) {
+                readByte();
+                readByte();
+            }
+        }
+
+        private void skipString() throws IOException {
+            while (true) {
+                if (readByte() == 0) return;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (end >= 0) return -1;
+            try {
+                while (true) {
+                    int inflated = inflater.inflate(b, off, len);
+                    if (inflated > 0) {
+                        crc.update(b, off, inflated);
+                        return inflated;
+                    }
+                    if (inflater.finished()) {
+                        readTrailer();
+                        return -1;
+                    }
+                    if (inflater.needsDictionary()) throw new ZipException("неверные данные gzip");
+                    if (inflater.needsInput()) {
+                        fill();
+                        inflater.setInput(buffer, 0, bufferLen);
+                        bufferPos = bufferLen;
+                    }
+                }
+            } catch (DataFormatException e) {
+                throw new ZipException("неверные данные gzip: " + e.getMessage());
+            }
+        }
+
+        private void readTrailer() throws IOException {
+            bufferPos = bufferLen - inflater.getRemaining();
+            long expectedCrc = readInt();
+            long expectedSize = readInt();
+            if (expectedCrc != crc.getValue() || expectedSize != (inflater.getBytesWritten() & 0xffffffffL)) {
+                throw new ZipException("контрольная сумма блока gzip не совпадает");
+            }
+            end = position - bufferLen + bufferPos;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public void close() {
+            inflater.end();
+        }
+    }
+
+    private static final class Entry {
+        final long most;
+        final long least;
+        final long offset;
+        final int sequence;
+
+        Entry(UUID uuid, long offset, int sequence) {
+            this(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), offset, sequence);
+        }
+
+        Entry(long most, long least, long offset, int sequence) {
+            this.most = most;
+            this.least = least;
+            this.offset = offset;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * Отсортированные массивы UUID и смещений блоков с последними записями: около 24 байт на игрока.
+     */
+    private static final class Index {
+        static final Index EMPTY = new Index(new long[0], new long[0], new long[0], 0, 0, false);
+        static final Index FAILED = new Index(new long[0], new long[0], new long[0], 0, 0, true);
+
+        final long[] most;
+        final long[] least;
+        final long[] offsets;
+        final int records;
+        // Конец последнего целого блока
+        final long end;
+        final boolean failed;
+
+        private Index(long[] most, long[] least, long[] offsets, int records, long end, boolean failed) {
+            this.most = most;
+            this.least = least;
+            this.offsets = offsets;
+            this.records = records;
+            this.end = end;
+            this.failed = failed;
+        }
+
+        static Index of(List<Entry> entries, int records, long end) {
+            entries.sort(Comparator.<Entry>comparingLong(e -> e.most)
+                    .thenComparingLong(e -> e.least)
+                    .thenComparingInt(e -> e.sequence));
+
+            int size = 0;
+            long[] most = new long[entries.size()];
+            long[] least = new long[entries.size()];
+            long[] offsets = new long[entries.size()];
+            for (Entry entry : entries) {
+                // Более поздняя запись того же игрока заменяет предыдущую
+                if (size > 0 && most[size - 1] == entry.most && least[size - 1] == entry.least) {
+                    offsets[size - 1] = entry.offset;
+                    continue;
+                }
+                most[size] = entry.most;
+                least[size] = entry.least;
+                offsets[size] = entry.offset;
+                size++;
+            }
+            if (size < most.length) {
+                most = Arrays.copyOf(most, size);
+                least = Arrays.copyOf(least, size);
+                offsets = Arrays.copyOf(offsets, size);
+            }
+            return new Index(most, least, offsets, records, end, false);
+        }
+
+        Index with(List<Record> added, long[] addedOffsets, long newEnd) {
+            List<Entry> entries = new ArrayList<>(size() + added.size());
+            for (int i = 0; i < size(); i++) {
+                entries.add(new Entry(most[i], least[i], offsets[i], -1));
+            }
+            for (int i = 0; i < added.size(); i++) {
+                entries.add(new Entry(added.get(i).getUuid(), addedOffsets[i], i));
+            }
+            return of(entries, records + added.size(), newEnd);
+        }
+
+        int size() {
+            return offsets.length;
+        }
+
+        long find(UUID uuid) {
+            long keyMost = uuid.getMostSignificantBits();
+            long keyLeast = uuid.getLeastSignificantBits();
+            int low = 0;
+            int high = offsets.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = most[mid] != keyMost ? Long.compare(most[mid], keyMost) : Long.compare(least[mid], keyLeast);
+                if (cmp < 0) low = mid + 1;
+                else if (cmp > 0) high = mid - 1;
+                else return offsets[mid];
+            }
+            return -1;
+        }
+    }
+}
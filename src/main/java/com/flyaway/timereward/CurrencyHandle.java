@@ -0,0 +1,35 @@
+package com.flyaway.timereward;
+
+/**
+ * Разрешенная валюта конкретного провайдера. Хранит объект валюты бэкенда,
+ * чтобы не искать его при каждой выдаче награды.
+ */
+public class CurrencyHandle {
+    private final EconomyProvider provider;
+    private final String id;
+    private final String symbol;
+    private final Object backend;
+
+    public CurrencyHandle(EconomyProvider provider, String id, String symbol, Object backend) {
+        this.provider = provider;
+        this.id = id;
+        this.symbol = symbol;
+        this.backend = backend;
+    }
+
+    public EconomyProvider getProvider() {
+        return provider;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public Object getBackend() {
+        return backend;
+    }
+}
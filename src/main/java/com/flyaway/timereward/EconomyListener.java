@@ -0,0 +1,55 @@
+package com.flyaway.timereward;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.event.server.PluginEnableEvent;
+import org.bukkit.event.server.ServiceRegisterEvent;
+import org.bukkit.event.server.ServiceUnregisterEvent;
+
+/**
+ * Переподключает провайдеры и заново разрешает валюты,
+ * когда экономический плагин перезагружается или регистрирует экономику.
+ */
+public class EconomyListener implements Listener {
+    private static final String VAULT_ECONOMY = "net.milkbowl.vault.economy.Economy";
+
+    private final TimeReward plugin;
+
+    public EconomyListener(TimeReward plugin) {
+        this.plugin = plugin;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPluginEnable(PluginEnableEvent event) {
+        if (event.getPlugin().getName().equals("CoinsEngine")) {
+            plugin.refreshEconomyProvider("coinsengine");
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPluginDisable(PluginDisableEvent event) {
+        String name = event.getPlugin().getName();
+        if (name.equals("CoinsEngine")) {
+            plugin.disableEconomyProvider("coinsengine");
+        } else if (name.equals("Vault")) {
+            plugin.disableEconomyProvider("vault");
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onServiceRegister(ServiceRegisterEvent event) {
+        if (event.getProvider().getService().getName().equals(VAULT_ECONOMY)) {
+            plugin.refreshEconomyProvider("vault");
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onServiceUnregister(ServiceUnregisterEvent event) {
+        if (event.getProvider().getService().getName().equals(VAULT_ECONOMY)) {
+            // Экономику мог зарегистрировать другой плагин, поэтому переподключаемся
+            plugin.refreshEconomyProvider("vault");
+        }
+    }
+}
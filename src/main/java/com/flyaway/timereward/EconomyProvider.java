@@ -0,0 +1,79 @@
+package com.flyaway.timereward;
+
+import org.bukkit.entity.Player;
+
+import java.util.List;
+
+/**
+ * Источник валют для выдачи наград (CoinsEngine, Vault и т.д.).
+ * Валюты разрешаются один раз при загрузке конфига в {@link CurrencyHandle},
+ * поэтому при выдаче награды провайдер не ищет валюту заново.
+ */
+public interface EconomyProvider {
+
+    /**
+     * Имя провайдера, используемое в конфиге (settings.economy-provider).
+     */
+    String getName();
+
+    /**
+     * Подключается к экономическому плагину.
+     *
+     * @return true, если провайдер готов к работе
+     */
+    boolean setup();
+
+    /**
+     * Отключает провайдер, например когда экономический плагин выгружен.
+     */
+    void shutdown();
+
+    boolean isEnabled();
+
+    /**
+     * Ищет валюту в экономическом плагине.
+     *
+     * @return дескриптор валюты или null, если валюта не найдена
+     */
+    CurrencyHandle resolveCurrency(String currencyId);
+
+    boolean deposit(Player player, CurrencyHandle currency, double amount);
+
+    /**
+     * Выдает валюту нескольким игрокам сразу. Реализации, чей бэкенд умеет
+     * пакетные операции, переопределяют этот метод; результат каждой выдачи
+     * записывается в {@link Deposit#isSuccess()}.
+     */
+    default void depositBatch(CurrencyHandle currency, List<Deposit> deposits) {
+        for (Deposit deposit : deposits) {
+            deposit.setSuccess(deposit(deposit.getPlayer(), currency, deposit.getAmount()));
+        }
+    }
+
+    class Deposit {
+        private final Player player;
+        private final double amount;
+        private boolean success;
+
+        public Deposit(Player player, double amount) {
+            this.player = player;
+            this.amount = amount;
+        }
+
+        public Player getPlayer() {
+            return player;
+        }
+
+        public double getAmount() {
+            return amount;
+        }
+
+        public boolean isSuccess() {
+            return success;
+        }
+
+        public void setSuccess(boolean success) {
+            this.success = success;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.flyaway.timereward;
+
+import net.ess3.api.events.AfkStatusChangeEvent;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+
+/**
+ * Регистрируется только при установленном Essentials,
+ * чтобы без него не загружались классы его API.
+ */
+public class EssentialsAfkListener implements Listener {
+    private final TimeReward plugin;
+
+    public EssentialsAfkListener(TimeReward plugin) {
+        this.plugin = plugin;
+    }
+
+    @EventHandler
+    public void onAfkStatusChange(AfkStatusChangeEvent event) {
+        // Если AFK проверка отключена, игнорируем событие
+        if (!plugin.isRequireAfkCheck()) {
+            return;
+        }
+
+        // true = стал AFK, false = перестал быть AFK
+        plugin.getPlayerListener().setAfk(event.getAffected().getBase(), event.getValue());
+    }
+}
@@ -6,11 +6,13 @@ import java.util.Map;
 public class PlayerData {
     private long totalTime;
     private long periodTime;
+    private long lastSeen;
     private final Map<String, Long> lastRewardTimes;
 
-    public PlayerData(long totalTime, long periodTime, Map<String, Long> lastRewardTimes) {
+    public PlayerData(long totalTime, long periodTime, long lastSeen, Map<String, Long> lastRewardTimes) {
         this.totalTime = totalTime;
         this.periodTime = periodTime;
+        this.lastSeen = lastSeen;
         this.lastRewardTimes = lastRewardTimes != null ? new HashMap<>(lastRewardTimes) : new HashMap<>();
     }
 
@@ -30,6 +32,15 @@ public class PlayerData {
         this.periodTime = periodTime;
     }
 
+    // Время последнего выхода или входа игрока (секунды с эпохи)
+    public long getLastSeen() {
+        return lastSeen;
+    }
+
+    public void setLastSeen(long lastSeen) {
+        this.lastSeen = lastSeen;
+    }
+
     public Long getLastRewardTime(String currencyType) {
         return lastRewardTimes.get(currencyType);
     }
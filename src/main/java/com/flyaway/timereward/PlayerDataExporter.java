@@ -0,0 +1,321 @@
+package com.flyaway.timereward;
+
+import org.bukkit.Bukkit;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.ScalarEvent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Потоковая выгрузка данных всех игроков в CSV или JSON Lines.
+ * Данные берутся из снимка playerdata.yml и архива неактивных игроков и читаются
+ * по одной записи. В памяти держатся только UUID игроков, которые есть и в снимке, и в архиве
+ * (вернувшихся после архивации), чтобы не выгрузить их дважды.
+ */
+public class PlayerDataExporter {
+    // Как часто проверять, не пора ли сообщить о ходе выгрузки
+    private static final int PROGRESS_CHECK_RECORDS = 1000;
+    private static final long PROGRESS_INTERVAL_MILLIS = 5000;
+
+    private final TimeReward plugin;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public enum Format {
+        CSV("csv"),
+        JSONL("jsonl");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Format fromString(String value) {
+            for (Format format : values()) {
+                if (format.extension.equalsIgnoreCase(value)) return format;
+            }
+            return null;
+        }
+    }
+
+    public PlayerDataExporter(TimeReward plugin) {
+        this.plugin = plugin;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * Запускает выгрузку в фоновом потоке.
+     *
+     * @param progress получает сообщения о ходе выгрузки (вызывается из фонового потока)
+     * @return файл с результатом; завершается с ошибкой, если выгрузка уже идет
+     */
+    public CompletableFuture<File> export(Format format, Consumer<String> progress) {
+        CompletableFuture<File> result = new CompletableFuture<>();
+        if (!running.compareAndSet(false, true)) {
+            result.completeExceptionally(new IllegalStateException("Выгрузка уже выполняется"));
+            return result;
+        }
+
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                result.complete(runExport(format, progress));
+            } catch (Exception e) {
+                plugin.getLogger().severe("Ошибка при выгрузке данных игроков: " + e.getMessage());
+                result.completeExceptionally(e);
+            } finally {
+                running.set(false);
+            }
+        });
+        return result;
+    }
+
+    private File runExport(Format format, Consumer<String> progress) throws IOException {
+        File exportDir = new File(plugin.getDataFolder(), "exports");
+        exportDir.mkdirs();
+        String timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date(plugin.getClock().millis()));
+        File target = new File(exportDir, "playerdata-" + timestamp + "." + format.getExtension());
+        File partial = new File(exportDir, target.getName() + ".part");
+        File snapshot = new File(exportDir, "snapshot-" + timestamp + ".yml");
+
+        List<String> currencies = new ArrayList<>(plugin.getCurrencyIds());
+        Progress counter = new Progress(progress);
+
+        try {
+            ColdArchive coldArchive = plugin.getColdArchive();
+            // Архивация ждет конца выгрузки: иначе игрок из снимка мог бы попасть в архив и выгрузиться дважды
+            coldArchive.runWithoutAppends(() -> {
+                // Согласованный снимок активных игроков, дальше с ним работаем без блокировок
+                int hotPlayers = plugin.writePlayerDataSnapshot(snapshot);
+                // Восстановленные из архива игроки учтены дважды, лишние вычитаются при обходе снимка
+                counter.total = hotPlayers + coldArchive.size();
+
+                Set<UUID> restored = new HashSet<>();
+                long[] periodResetAt = new long[1];
+                try (Writer writer = Files.newBufferedWriter(partial.toPath(), StandardCharsets.UTF_8);
+                     Reader reader = Files.newBufferedReader(snapshot.toPath(), StandardCharsets.UTF_8)) {
+                    if (format == Format.CSV) writeCsvHeader(writer, currencies);
+
+                    periodResetAt[0] = readSnapshot(reader, (uuid, data) -> {
+                        if (coldArchive.contains(uuid)) {
+                            restored.add(uuid);
+                            counter.total--;
+                        }
+                        writeRecord(writer, format, currencies, uuid, data, false);
+                        counter.increment();
+                    });
+
+                    // Игроки, восстановленные из архива, уже выгружены из снимка
+                    coldArchive.forEach(record -> {
+                        if (restored.contains(record.getUuid())) return;
+                        PlayerData data = record.getData();
+                        // То же правило, что при восстановлении: сброс после архивации обнуляет период
+                        if (record.getArchivedAt() < periodResetAt[0]) data.setPeriodTime(0);
+                        writeRecord(writer, format, currencies, record.getUuid(), data, true);
+                        counter.increment();
+                    });
+                }
+            });
+            Files.move(partial.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(snapshot.toPath());
+            Files.deleteIfExists(partial.toPath());
+        }
+
+        progress.accept("Выгрузка завершена: " + counter.done + " игроков за "
+                + (System.currentTimeMillis() - counter.started) / 1000 + " с, файл " + target.getName());
+        return target;
+    }
+
+    private interface RecordWriter {
+        void accept(UUID uuid, PlayerData data) throws IOException;
+    }
+
+    /**
+     * Разбирает снимок playerdata.yml по событиям SnakeYAML, не строя дерево документа.
+     *
+     * @return время последнего сброса периодического времени (periodResetAt) или 0
+     */
+    private long readSnapshot(Reader reader, RecordWriter consumer) throws IOException {
+        long periodResetAt = 0;
+        Iterator<Event> events = new Yaml().parse(reader).iterator();
+        Event event = events.next(); // StreamStart
+        event = events.next();
+        if (event.is(Event.ID.StreamEnd)) return periodResetAt; // пустой файл
+        events.next(); // начало корневого словаря
+
+        while (true) {
+            event = events.next();
+            if (event.is(Event.ID.MappingEnd)) break;
+            String key = ((ScalarEvent) event).getValue();
+            if (key.equals("periodResetAt")) {
+                periodResetAt = readLong(events);
+                continue;
+            }
+            if (!key.equals("players")) {
+                skipNode(events);
+                continue;
+            }
+
+            event = events.next();
+            if (!event.is(Event.ID.MappingStart)) continue; // "players: {}" или пустое значение
+            while (true) {
+                event = events.next();
+                if (event.is(Event.ID.MappingEnd)) break;
+                String uuidKey = ((ScalarEvent) event).getValue();
+                PlayerData data = readPlayer(events);
+                try {
+                    consumer.accept(UUID.fromString(uuidKey), data);
+                } catch (IllegalArgumentException e) {
+                    plugin.getLogger().warning("Неверный UUID в файле данных: " + uuidKey);
+                }
+            }
+        }
+        return periodResetAt;
+    }
+
+    private PlayerData readPlayer(Iterator<Event> events) {
+        long totalTime = 0;
+        long periodTime = 0;
+        long lastSeen = 0;
+        Map<String, Long> lastRewardTimes = new LinkedHashMap<>();
+
+        if (!events.next().is(Event.ID.MappingStart)) return new PlayerData(0, 0, 0, lastRewardTimes);
+        while (true) {
+            Event event = events.next();
+            if (event.is(Event.ID.MappingEnd)) break;
+            String field = ((ScalarEvent) event).getValue();
+            switch (field) {
+                case "totalTime" -> totalTime = readLong(events);
+                case "periodTime" -> periodTime = readLong(events);
+                case "lastSeen" -> lastSeen = readLong(events);
+                case "lastRewardTimes" -> {
+                    if (!events.next().is(Event.ID.MappingStart)) break;
+                    while (true) {
+                        Event currency = events.next();
+                        if (currency.is(Event.ID.MappingEnd)) break;
+                        lastRewardTimes.put(((ScalarEvent) currency).getValue(), readLong(events));
+                    }
+                }
+                default -> skipNode(events);
+            }
+        }
+        return new PlayerData(totalTime, periodTime, lastSeen, lastRewardTimes);
+    }
+
+    private static long readLong(Iterator<Event> events) {
+        Event event = events.next();
+        if (!(event instanceof ScalarEvent scalar)) {
+            skipNested(events, event);
+            return 0;
+        }
+        try {
+            return Long.parseLong(scalar.getValue());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static void skipNode(Iterator<Event> events) {
+        skipNested(events, events.next());
+    }
+
+    private static void skipNested(Iterator<Event> events, Event start) {
+        if (!start.is(Event.ID.MappingStart) && !start.is(Event.ID.SequenceStart)) return;
+        int depth = 1;
+        while (depth > 0) {
+            Event event = events.next();
+            if (event.is(Event.ID.MappingStart) || event.is(Event.ID.SequenceStart)) depth++;
+            else if (event.is(Event.ID.MappingEnd) || event.is(Event.ID.SequenceEnd)) depth--;
+        }
+    }
+
+    private static void writeCsvHeader(Writer writer, List<String> currencies) throws IOException {
+        writer.write("uuid,totalTime,periodTime,lastSeen,archived");
+        for (String currency : currencies) {
+            writer.write(",lastRewardTime_" + currency);
+        }
+        writer.write('\n');
+    }
+
+    private static void writeRecord(Writer writer, Format format, List<String> currencies,
+                                    UUID uuid, PlayerData data, boolean archived) throws IOException {
+        if (format == Format.CSV) {
+            writer.write(uuid + "," + data.getTotalTime() + "," + data.getPeriodTime() + ","
+                    + data.getLastSeen() + "," + archived);
+            for (String currency : currencies) {
+                writer.write(',');
+                Long lastReward = data.getLastRewardTime(currency);
+                if (lastReward != null) writer.write(Long.toString(lastReward));
+            }
+        } else {
+            writer.write("{\"uuid\":\"" + uuid + "\",\"totalTime\":" + data.getTotalTime()
+                    + ",\"periodTime\":" + data.getPeriodTime() + ",\"lastSeen\":" + data.getLastSeen()
+                    + ",\"archived\":" + archived + ",\"lastRewardTimes\":{");
+            boolean first = true;
+            for (Map.Entry<String, Long> entry : data.getLastRewardTimes().entrySet()) {
+                if (!first) writer.write(',');
+                writer.write("\"" + escapeJson(entry.getKey()) + "\":" + entry.getValue());
+                first = false;
+            }
+            writer.write("}}");
+        }
+        writer.write('\n');
+    }
+
+    private static String escapeJson(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static final class Progress {
+        private final Consumer<String> listener;
+        private final long started = System.currentTimeMillis();
+        private long lastReport = started;
+        private long total;
+        private long done;
+
+        Progress(Consumer<String> listener) {
+            this.listener = listener;
+        }
+
+        void increment() {
+            done++;
+            if (done % PROGRESS_CHECK_RECORDS != 0) return;
+
+            long now = System.currentTimeMillis();
+            if (now - lastReport < PROGRESS_INTERVAL_MILLIS) return;
+            lastReport = now;
+
+            long elapsed = now - started;
+            long remaining = total > done ? (total - done) * elapsed / done / 1000 : 0;
+            long percent = total > 0 ? Math.min(100, done * 100 / total) : 0;
+            listener.accept("Выгрузка: " + done + "/" + total + " (" + percent + "%), осталось ~" + remaining + " с");
+        }
+    }
+}
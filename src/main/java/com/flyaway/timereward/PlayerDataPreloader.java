@@ -0,0 +1,121 @@
+package com.flyaway.timereward;
+
+import com.destroystokyo.paper.event.player.PlayerConnectionCloseEvent;
+import net.kyori.adventure.text.Component;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Загружает данные игрока в потоке входа (AsyncPlayerPreLoginEvent), чтобы при входе
+ * на основном потоке оставалось только положить готовую запись в память.
+ */
+public class PlayerDataPreloader implements Listener {
+    private static final long JOIN_WAIT_MILLIS = 2000;
+    // Запасной срок на случай, если закрытие соединения не дошло до плагина
+    private static final long EXPIRE_MILLIS = 5 * 60 * 1000;
+
+    private final TimeReward plugin;
+    private final Map<UUID, Preload> preloads = new ConcurrentHashMap<>();
+
+    private static final class Preload {
+        final CompletableFuture<PlayerData> data = new CompletableFuture<>();
+        final long createdAt;
+
+        Preload(long createdAt) {
+            this.createdAt = createdAt;
+        }
+    }
+
+    public PlayerDataPreloader(TimeReward plugin) {
+        this.plugin = plugin;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onAsyncPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) return;
+        expireStale();
+
+        UUID playerId = event.getUniqueId();
+        Preload preload = new Preload(System.currentTimeMillis());
+        preloads.put(playerId, preload);
+        try {
+            PlayerData data = plugin.preloadPlayerData(playerId);
+            if (data != null) prepareRewardDeadlines(data);
+            preload.data.complete(data);
+        } catch (IOException e) {
+            // Без доступа к архиву игрок получил бы пустую запись вместо своей
+            plugin.getLogger().severe("Не удалось загрузить данные игрока " + event.getName() + ": " + e.getMessage());
+            preloads.remove(playerId);
+            event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, Component.text(PlayerListener.DATA_UNAVAILABLE_MESSAGE));
+        } catch (RuntimeException e) {
+            plugin.getLogger().warning("Ошибка при предзагрузке данных игрока " + event.getName() + ": " + e.getMessage());
+            preload.data.complete(null);
+        }
+    }
+
+    /**
+     * Вход, отмененный после предзагрузки (другим плагином или обрывом соединения),
+     * до PlayerJoinEvent не доходит: предзагрузка отбрасывается сразу при закрытии соединения.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onConnectionClose(PlayerConnectionCloseEvent event) {
+        // После обычного выхода записи уже нет. Если старое соединение закрывается после нового входа
+        // того же игрока, его данные загрузятся при входе синхронно
+        preloads.remove(event.getPlayerUniqueId());
+    }
+
+    // Точки отсчета наград, которые иначе выставил бы первый цикл наград
+    private void prepareRewardDeadlines(PlayerData data) {
+        for (String currencyId : plugin.getCurrencyIds()) {
+            if (data.getLastRewardTime(currencyId) == null) {
+                data.setLastRewardTime(currencyId, data.getTotalTime());
+            }
+        }
+    }
+
+    /**
+     * Забирает предзагруженные данные игрока. Если загрузка еще идет, ждет ее завершения.
+     *
+     * @return данные или null, если их нужно загрузить синхронно
+     */
+    public PlayerData take(UUID playerId) {
+        expireStale();
+        Preload preload = preloads.remove(playerId);
+        if (preload == null) return null;
+
+        try {
+            return preload.data.get(JOIN_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            plugin.getLogger().warning("Предзагрузка данных игрока " + playerId + " не завершилась, загружаем синхронно");
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Отбрасывает все предзагрузки, например после сброса периодического времени.
+     */
+    public void invalidateAll() {
+        preloads.clear();
+    }
+
+    private void expireStale() {
+        long threshold = System.currentTimeMillis() - EXPIRE_MILLIS;
+        preloads.values().removeIf(preload -> preload.createdAt < threshold);
+    }
+}
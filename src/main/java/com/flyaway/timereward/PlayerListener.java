@@ -1,6 +1,6 @@
 package com.flyaway.timereward;
 
-import net.ess3.api.events.AfkStatusChangeEvent;
+import net.kyori.adventure.text.Component;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
@@ -8,11 +8,15 @@ import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 
+import java.io.UncheckedIOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 
 public class PlayerListener implements Listener {
+    // Архив недоступен: пустая запись вместо архивной перезаписала бы время игрока
+    static final String DATA_UNAVAILABLE_MESSAGE = "Не удалось загрузить ваши данные, попробуйте зайти позже";
+
     private final TimeReward plugin;
     private final Map<UUID, Long> joinTimes; // Только для активных игроков (не AFK)
 
@@ -26,11 +30,12 @@ public class PlayerListener implements Listener {
             UUID playerId = player.getUniqueId();
 
             // Загружаем данные игрока в память
-            plugin.getOrCreatePlayerData(playerId);
+            if (!loadOrKick(player)) continue;
+            if (plugin.getActivityTracker() != null) plugin.getActivityTracker().track(player);
 
             // Добавляем в joinTimes только если игрок не в AFK
             if (!plugin.isAfk(player)) {
-                joinTimes.put(playerId, System.currentTimeMillis() / 1000);
+                joinTimes.put(playerId, plugin.currentTimeSeconds());
                 plugin.getLogger().info("Игрок " + player.getName() + " инициализирован как активный");
             } else {
                 plugin.getLogger().info("Игрок " + player.getName() + " пропущен (AFK)");
@@ -44,22 +49,41 @@ public class PlayerListener implements Listener {
         Player player = event.getPlayer();
         UUID playerId = player.getUniqueId();
 
-        // Загружаем данные игрока в память
-        plugin.getOrCreatePlayerData(playerId);
+        // Данные обычно уже загружены в потоке входа, иначе загружаем синхронно
+        PlayerData preloaded = plugin.getPlayerDataPreloader().take(playerId);
+        if (preloaded != null) plugin.installPlayerData(playerId, preloaded);
+        else if (!loadOrKick(player)) return;
+        plugin.getPlayerData(playerId).setLastSeen(plugin.currentTimeSeconds());
+        if (plugin.getActivityTracker() != null) plugin.getActivityTracker().track(player);
 
         // Запоминаем время входа
-        joinTimes.put(playerId, System.currentTimeMillis() / 1000);
+        joinTimes.put(playerId, plugin.currentTimeSeconds());
 
         if (plugin.isDebug()) plugin.getLogger().info("Данные загружены для игрока: " + player.getName());
     }
 
+    private boolean loadOrKick(Player player) {
+        try {
+            plugin.getOrCreatePlayerData(player.getUniqueId());
+            return true;
+        } catch (UncheckedIOException e) {
+            plugin.getLogger().severe("Не удалось загрузить данные игрока " + player.getName() + ": " + e.getCause().getMessage());
+            player.kick(Component.text(DATA_UNAVAILABLE_MESSAGE));
+            return false;
+        }
+    }
+
     @EventHandler
     public void onPlayerQuit(PlayerQuitEvent event) {
         Player player = event.getPlayer();
         UUID playerId = player.getUniqueId();
 
         updatePlayerSessionTime(playerId); // Обновляем время при выходе
+        PlayerData data = plugin.getPlayerData(playerId);
+        if (data != null) data.setLastSeen(plugin.currentTimeSeconds());
         joinTimes.remove(playerId); // Удаляем из карты сессий
+        if (plugin.getActivityTracker() != null) plugin.getActivityTracker().untrack(playerId);
+        plugin.getRewardPipeline().invalidateTiers(playerId);
 
         // Сохраняем данные и удаляем из памяти
         plugin.savePlayerData(playerId);
@@ -71,33 +95,41 @@ public class PlayerListener implements Listener {
 
     // Метод для обновления времени сессии
     public void updatePlayerSessionTime(UUID playerId) {
+        long now = plugin.currentTimeSeconds();
+        ActivityTracker activityTracker = plugin.getActivityTracker();
+        // Со встроенной AFK проверкой засчитываем только время до последней активности
+        long until = activityTracker != null && plugin.isRequireAfkCheck()
+                ? Math.min(now, activityTracker.getLastActivitySeconds(playerId, now)) : now;
+        updatePlayerSessionTime(playerId, until);
+    }
+
+    // Засчитывает сессию до указанного момента, например до последней активности перед AFK
+    private void updatePlayerSessionTime(UUID playerId, long until) {
         Long joinTime = joinTimes.get(playerId);
         if (joinTime != null) {
-            long sessionTime = (System.currentTimeMillis() / 1000) - joinTime;
+            long now = Math.max(until, joinTime);
+            long sessionTime = now - joinTime;
             PlayerData data = plugin.getPlayerData(playerId);
             if (data != null) {
                 data.setTotalTime(data.getTotalTime() + sessionTime);
                 data.setPeriodTime(data.getPeriodTime() + sessionTime);
             }
-            joinTimes.put(playerId, System.currentTimeMillis() / 1000); // Сбрасываем время входа
+            joinTimes.put(playerId, now); // Сбрасываем время входа
         }
     }
 
-    @EventHandler
-    public void onAfkStatusChange(AfkStatusChangeEvent event) {
-        // Если AFK проверка отключена, игнорируем событие
-        if (!this.plugin.isRequireAfkCheck()) {
-            return;
-        }
+    public void setAfk(Player player, boolean isAfk) {
+        setAfk(player, isAfk, plugin.currentTimeSeconds());
+    }
 
-        Player player = event.getAffected().getBase();
+    // since - момент, с которого игрок считается AFK
+    public void setAfk(Player player, boolean isAfk, long since) {
         UUID playerId = player.getUniqueId();
-        boolean isAfk = event.getValue(); // true = стал AFK, false = перестал быть AFK
 
         if (isAfk) {
             // Игрок ушел в AFK - сохраняем сессию и удаляем из joinTimes
             if (joinTimes.containsKey(playerId)) {
-                updatePlayerSessionTime(playerId);
+                updatePlayerSessionTime(playerId, since);
                 joinTimes.remove(playerId);
                 if (plugin.isDebug())
                     plugin.getLogger().info("Игрок " + player.getName() + " ушел в AFK, сессия сохранена");
@@ -105,7 +137,7 @@ public class PlayerListener implements Listener {
         } else {
             // Игрок вышел из AFK - добавляем в joinTimes только если онлайн
             if (player.isOnline() && !joinTimes.containsKey(playerId)) {
-                joinTimes.put(playerId, System.currentTimeMillis() / 1000);
+                joinTimes.put(playerId, plugin.currentTimeSeconds());
                 if (plugin.isDebug())
                     plugin.getLogger().info("Игрок " + player.getName() + " вышел из AFK, сессия возобновлена");
             }
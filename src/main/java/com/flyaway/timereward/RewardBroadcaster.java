@@ -0,0 +1,90 @@
+package com.flyaway.timereward;
+
+import org.bukkit.Bukkit;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Собирает публичные оповещения о наградах за один цикл проверки
+ * и отправляет их одной пачкой, а при большом числе награжденных - одной строкой сводки.
+ */
+public class RewardBroadcaster {
+    private final TimeReward plugin;
+    // Имя игрока -> выданные за цикл награды ("1 coin")
+    private final Map<String, List<String>> pendingRewards = new LinkedHashMap<>();
+    // Валюта -> сумма выданного за цикл, для сводки
+    private final Map<String, Double> totals = new LinkedHashMap<>();
+
+    public RewardBroadcaster(TimeReward plugin) {
+        this.plugin = plugin;
+    }
+
+    public void add(String playerName, double amount, String currencyName) {
+        pendingRewards.computeIfAbsent(playerName, k -> new ArrayList<>(2))
+                .add(formatReward(amount, currencyName));
+        totals.merge(currencyName, amount, Double::sum);
+    }
+
+    private static String formatReward(double amount, String currencyName) {
+        return formatAmount(amount) + " " + currencyName;
+    }
+
+    /**
+     * Сумма без лишних нулей: 3, 0.5, 1.25. Округление до 4 знаков убирает погрешность сложения double.
+     */
+    static String formatAmount(double amount) {
+        return BigDecimal.valueOf(amount).setScale(4, RoundingMode.HALF_UP).stripTrailingZeros().toPlainString();
+    }
+
+    public void flush() {
+        if (pendingRewards.isEmpty()) return;
+
+        int threshold = plugin.getBroadcastSummaryThreshold();
+        if (threshold > 0 && pendingRewards.size() >= threshold) {
+            broadcastSummary();
+        } else {
+            broadcastIndividual();
+        }
+        pendingRewards.clear();
+        totals.clear();
+    }
+
+    // Одна строка на цикл: число награжденных и сумма выданного по каждой валюте
+    private void broadcastSummary() {
+        List<String> rewards = new ArrayList<>(totals.size());
+        for (Map.Entry<String, Double> entry : totals.entrySet()) {
+            rewards.add(formatReward(entry.getValue(), entry.getKey()));
+        }
+
+        Bukkit.broadcastMessage(plugin.getBroadcastSummaryMessage()
+                .replace("{count}", String.valueOf(pendingRewards.size()))
+                .replace("{rewards}", String.join(", ", rewards)));
+
+        if (plugin.isDebug())
+            plugin.getLogger().info("Отправлена сводка о наградах " + pendingRewards.size() + " игроков");
+    }
+
+    private void broadcastIndividual() {
+        boolean merge = plugin.isBroadcastMergeCurrencies();
+        for (Map.Entry<String, List<String>> entry : pendingRewards.entrySet()) {
+            if (merge) {
+                broadcast(entry.getKey(), String.join(", ", entry.getValue()));
+            } else {
+                for (String reward : entry.getValue()) {
+                    broadcast(entry.getKey(), reward);
+                }
+            }
+        }
+    }
+
+    private void broadcast(String playerName, String rewards) {
+        Bukkit.broadcastMessage(plugin.getBroadcastMessage()
+                .replace("{player}", playerName)
+                .replace("{rewards}", rewards));
+    }
+}
@@ -0,0 +1,284 @@
+package com.flyaway.timereward;
+
+import com.flyaway.timereward.TimeReward.CurrencyConfig;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Цикл наград в три фазы: на основном потоке снимается компактный снимок онлайн игроков,
+ * расчет положенных наград выполняется параллельно в пуле потоков,
+ * а выдача и сообщения снова происходят на основном потоке.
+ */
+public class RewardPipeline {
+    private final TimeReward plugin;
+    private final ForkJoinPool workers;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Map<UUID, Tiers> tiersCache = new ConcurrentHashMap<>();
+    private Executor mainThreadExecutor;
+    private long tierCacheMillis;
+    private long lastMainThreadNanos;
+
+    // Размеры наград игрока по валютам цикла (из пермишенов)
+    private static final class Tiers {
+        final CurrencyConfig[] currencies;
+        final double[] amounts;
+        final long computedAt;
+
+        Tiers(CurrencyConfig[] currencies, double[] amounts, long computedAt) {
+            this.currencies = currencies;
+            this.amounts = amounts;
+            this.computedAt = computedAt;
+        }
+    }
+
+    private static final class PlayerSnapshot {
+        final UUID uuid;
+        final long totalTime;
+        final long[] lastRewardTimes;
+        final double[] amounts;
+
+        PlayerSnapshot(UUID uuid, long totalTime, long[] lastRewardTimes, double[] amounts) {
+            this.uuid = uuid;
+            this.totalTime = totalTime;
+            this.lastRewardTimes = lastRewardTimes;
+            this.amounts = amounts;
+        }
+    }
+
+    private static final class RewardGrant {
+        final UUID uuid;
+        final int currencyIndex;
+        final long previousRewardTime;
+        final long newRewardTime;
+        final double amount;
+
+        RewardGrant(UUID uuid, int currencyIndex, long previousRewardTime, long newRewardTime, double amount) {
+            this.uuid = uuid;
+            this.currencyIndex = currencyIndex;
+            this.previousRewardTime = previousRewardTime;
+            this.newRewardTime = newRewardTime;
+            this.amount = amount;
+        }
+    }
+
+    public RewardPipeline(TimeReward plugin, int threads, long tierCacheSeconds) {
+        this.plugin = plugin;
+        this.workers = new ForkJoinPool(Math.max(1, threads));
+        this.mainThreadExecutor = task -> Bukkit.getScheduler().runTask(plugin, task);
+        setTierCacheSeconds(tierCacheSeconds);
+    }
+
+    public void setTierCacheSeconds(long tierCacheSeconds) {
+        this.tierCacheMillis = tierCacheSeconds * 1000;
+    }
+
+    // Позволяет симуляции выполнять фазу выдачи без тиков сервера
+    void setMainThreadExecutor(Executor mainThreadExecutor) {
+        this.mainThreadExecutor = mainThreadExecutor;
+    }
+
+    long getLastMainThreadNanos() {
+        return lastMainThreadNanos;
+    }
+
+    public void invalidateTiers(UUID playerId) {
+        tiersCache.remove(playerId);
+    }
+
+    public void shutdown() {
+        workers.shutdown();
+        try {
+            workers.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Запускает цикл наград. Вызывается на основном потоке; если предыдущий цикл
+     * еще не завершен, новый пропускается.
+     *
+     * @return завершается после выдачи наград на основном потоке
+     */
+    public CompletableFuture<Void> runCycle(Collection<? extends Player> players) {
+        if (!running.compareAndSet(false, true)) {
+            if (plugin.isDebug()) plugin.getLogger().warning("Предыдущий цикл наград еще не завершен, проверка пропущена");
+            return CompletableFuture.completedFuture(null);
+        }
+
+        long started = System.nanoTime();
+        CurrencyConfig[] currencies = plugin.getCurrencyConfigs().toArray(new CurrencyConfig[0]);
+        List<PlayerSnapshot> snapshots;
+        try {
+            snapshots = takeSnapshots(players, currencies);
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+        long snapshotNanos = System.nanoTime() - started;
+
+        return CompletableFuture
+                .supplyAsync(() -> computeGrants(snapshots, currencies), workers)
+                .thenAcceptAsync(grants -> {
+                    long applyStarted = System.nanoTime();
+                    applyGrants(grants, currencies);
+                    lastMainThreadNanos = snapshotNanos + System.nanoTime() - applyStarted;
+                }, mainThreadExecutor)
+                .whenComplete((ignored, error) -> {
+                    running.set(false);
+                    if (error != null) plugin.getLogger().severe("Ошибка в цикле наград: " + error.getMessage());
+                });
+    }
+
+    // Фаза 1 (основной поток): AFK, обновление сессий и копирование нужных полей
+    private List<PlayerSnapshot> takeSnapshots(Collection<? extends Player> players, CurrencyConfig[] currencies) {
+        List<PlayerSnapshot> snapshots = new ArrayList<>(players.size());
+        long now = plugin.getClock().millis();
+
+        for (Player player : players) {
+            if (plugin.isRequireAfkCheck() && plugin.isAfk(player)) continue;
+
+            UUID playerId = player.getUniqueId();
+            plugin.getPlayerListener().updatePlayerSessionTime(playerId);
+
+            PlayerData data = plugin.getPlayerData(playerId);
+            if (data == null) continue;
+
+            long[] lastRewardTimes = new long[currencies.length];
+            for (int i = 0; i < currencies.length; i++) {
+                Long lastRewardTime = data.getLastRewardTime(currencies[i].getCurrencyId());
+                if (lastRewardTime == null) {
+                    // Первая награда - устанавливаем текущее игровое время как точку отсчета
+                    lastRewardTime = data.getTotalTime();
+                    data.setLastRewardTime(currencies[i].getCurrencyId(), lastRewardTime);
+                }
+                lastRewardTimes[i] = lastRewardTime;
+            }
+
+            snapshots.add(new PlayerSnapshot(playerId, data.getTotalTime(), lastRewardTimes,
+                    getTiers(player, currencies, now).amounts));
+        }
+        return snapshots;
+    }
+
+    private Tiers getTiers(Player player, CurrencyConfig[] currencies, long now) {
+        Tiers tiers = tiersCache.get(player.getUniqueId());
+        if (tiers != null && now - tiers.computedAt < tierCacheMillis && Objects.deepEquals(tiers.currencies, currencies)) {
+            return tiers;
+        }
+
+        double[] amounts = new double[currencies.length];
+        for (int i = 0; i < currencies.length; i++) {
+            amounts[i] = plugin.getRewardAmount(player, currencies[i].getCurrencyId());
+        }
+        tiers = new Tiers(currencies, amounts, now);
+        tiersCache.put(player.getUniqueId(), tiers);
+        return tiers;
+    }
+
+    // Фаза 2 (пул потоков): сколько полных интервалов прошло и сколько за них положено
+    private List<RewardGrant> computeGrants(List<PlayerSnapshot> snapshots, CurrencyConfig[] currencies) {
+        long[] intervals = new long[currencies.length];
+        for (int i = 0; i < currencies.length; i++) {
+            intervals[i] = currencies[i].getRewardInterval();
+        }
+
+        return snapshots.parallelStream()
+                .flatMap(snapshot -> {
+                    List<RewardGrant> grants = new ArrayList<>(currencies.length);
+                    for (int i = 0; i < currencies.length; i++) {
+                        if (intervals[i] <= 0) continue;
+                        long elapsed = (snapshot.totalTime - snapshot.lastRewardTimes[i]) / intervals[i];
+                        if (elapsed <= 0) continue;
+                        // Без награды (amount 0) точка отсчета все равно сдвигается: интервалы
+                        // без права на награду не должны копиться до выдачи прав
+                        grants.add(new RewardGrant(snapshot.uuid, i, snapshot.lastRewardTimes[i],
+                                snapshot.lastRewardTimes[i] + elapsed * intervals[i], Math.max(0, snapshot.amounts[i]) * elapsed));
+                    }
+                    return grants.stream();
+                })
+                .collect(Collectors.toList());
+    }
+
+    // Фаза 3 (основной поток): пакетная выдача по валютам и сообщения
+    private void applyGrants(List<RewardGrant> grants, CurrencyConfig[] currencies) {
+        if (!grants.isEmpty()) {
+            List<List<RewardGrant>> byCurrency = new ArrayList<>(currencies.length);
+            for (int i = 0; i < currencies.length; i++) byCurrency.add(new ArrayList<>());
+            for (RewardGrant grant : grants) byCurrency.get(grant.currencyIndex).add(grant);
+
+            for (int i = 0; i < currencies.length; i++) {
+                if (!byCurrency.get(i).isEmpty()) applyCurrency(currencies[i], byCurrency.get(i));
+            }
+        }
+        plugin.getRewardBroadcaster().flush();
+    }
+
+    private void applyCurrency(CurrencyConfig currencyConfig, List<RewardGrant> grants) {
+        CurrencyHandle currency = currencyConfig.getCurrency();
+        String currencyId = currencyConfig.getCurrencyId();
+        List<RewardGrant> applicable = new ArrayList<>(grants.size());
+        List<PlayerData> applicableData = new ArrayList<>(grants.size());
+        List<EconomyProvider.Deposit> deposits = new ArrayList<>(grants.size());
+        for (RewardGrant grant : grants) {
+            // Игрок мог выйти или получить награду иначе, пока шел расчет
+            Player player = Bukkit.getPlayer(grant.uuid);
+            PlayerData data = plugin.getPlayerData(grant.uuid);
+            if (player == null || data == null) continue;
+            Long lastRewardTime = data.getLastRewardTime(currencyId);
+            if (lastRewardTime == null || lastRewardTime != grant.previousRewardTime) continue;
+
+            if (grant.amount <= 0) {
+                // Выдавать нечего - просто переносим точку отсчета
+                data.setLastRewardTime(currencyId, grant.newRewardTime);
+                continue;
+            }
+            // Остаток копится, только пока выдача положена, но не удалась
+            if (currency == null) continue;
+
+            applicable.add(grant);
+            applicableData.add(data);
+            deposits.add(new EconomyProvider.Deposit(player, grant.amount));
+        }
+
+        if (deposits.isEmpty()) {
+            if (currency == null && plugin.isDebug()) plugin.getLogger().warning("Валюта '" + currencyId + "' недоступна");
+            return;
+        }
+        currency.getProvider().depositBatch(currency, deposits);
+
+        for (int i = 0; i < deposits.size(); i++) {
+            EconomyProvider.Deposit deposit = deposits.get(i);
+            Player player = deposit.getPlayer();
+            if (!deposit.isSuccess()) {
+                plugin.getLogger().warning("Не удалось выдать " + currencyId + " игроку " + player.getName());
+                continue;
+            }
+            applicableData.get(i).setLastRewardTime(currencyId, applicable.get(i).newRewardTime);
+
+            String formattedAmount = RewardBroadcaster.formatAmount(deposit.getAmount());
+            player.sendMessage(plugin.getRewardMessage()
+                    .replace("{amount}", formattedAmount)
+                    .replace("{currency}", currency.getSymbol())
+                    .replace("{player}", player.getName()));
+
+            if (plugin.isBroadcastRewards()) {
+                plugin.getRewardBroadcaster().add(player.getName(), deposit.getAmount(), currency.getSymbol());
+            }
+        }
+    }
+}
@@ -12,41 +12,72 @@ import org.bukkit.permissions.PermissionAttachmentInfo;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 public class TimeReward extends JavaPlugin {
 
-    private CoinsEngineHook coinsEngine;
+    private final Map<String, EconomyProvider> economyProviders = new LinkedHashMap<>();
+    private String defaultEconomyProvider;
     private final Map<UUID, PlayerData> playerDataMap = new ConcurrentHashMap<>();
     private File dataFile;
     private YamlConfiguration dataConfig;
+    private ColdArchive coldArchive;
+    private PlayerDataExporter playerDataExporter;
     private Object essentials;
+    private ActivityTracker activityTracker;
     private PlayerListener playerListener;
+    private PlayerDataPreloader playerDataPreloader;
+    private RewardBroadcaster rewardBroadcaster;
+    private RewardPipeline rewardPipeline;
 
     private long checkInterval;
     private Map<String, CurrencyConfig> currencyConfigs;
     private boolean requireAfkCheck;
+    private String afkDetection;
+    private long idleTimeout;
+    private int rewardThreads;
+    private long tierCacheSeconds;
     private boolean broadcastRewards;
     private String rewardMessage;
+    private int broadcastSummaryThreshold;
+    private boolean broadcastMergeCurrencies;
+    private String broadcastMessage;
+    private String broadcastSummaryMessage;
     private BukkitTask rewardTimerTask;
     private BukkitTask saveTask;
+    private BukkitTask archiveTask;
+    private boolean archiveEnabled;
+    private long archiveInactiveDays;
     private boolean debug;
+    private Clock clock = Clock.systemUTC();
 
     public static class CurrencyConfig {
         private final long rewardInterval;
         private final double rewardDefault;
         private final String currencyId;
-        private final String currencySymbol;
+        private final String providerName;
+        private CurrencyHandle currency;
 
-        public CurrencyConfig(String currencyId, long rewardInterval, double rewardDefault, String currencySymbol) {
+        public CurrencyConfig(String currencyId, String providerName, long rewardInterval, double rewardDefault) {
             this.currencyId = currencyId;
+            this.providerName = providerName;
             this.rewardInterval = rewardInterval * 60;
             this.rewardDefault = rewardDefault;
-            this.currencySymbol = currencySymbol;
         }
 
         public long getRewardInterval() {
@@ -61,8 +92,20 @@ public class TimeReward extends JavaPlugin {
             return currencyId;
         }
 
+        public String getProviderName() {
+            return providerName;
+        }
+
+        public CurrencyHandle getCurrency() {
+            return currency;
+        }
+
+        public void setCurrency(CurrencyHandle currency) {
+            this.currency = currency;
+        }
+
         public String getCurrencySymbol() {
-            return currencySymbol;
+            return currency != null ? currency.getSymbol() : currencyId;
         }
     }
 
@@ -71,25 +114,30 @@ public class TimeReward extends JavaPlugin {
         saveDefaultConfig();
         setupDataFile();
 
-        coinsEngine = new CoinsEngineHook(this);
-        coinsEngine.setupCoinsEngine();
-        if (!coinsEngine.isEnabled()) {
-            getLogger().severe("CoinsEngine не найден! Плагин будет отключен.");
-            getServer().getPluginManager().disablePlugin(this);
-            return;
-        }
+        registerEconomyProvider(new CoinsEngineEconomyProvider(this));
+        registerEconomyProvider(new VaultEconomyProvider(this));
 
         loadConfig();
 
-        essentials = getServer().getPluginManager().getPlugin("Essentials");
-        if (essentials == null) {
-            getLogger().warning("EssentialsX не найден, AFK проверка отключена");
-        } else {
-            getLogger().info("EssentialsX найден, AFK проверка активна");
+        EconomyProvider defaultProvider = economyProviders.get(defaultEconomyProvider);
+        if (defaultProvider == null || !defaultProvider.setup()) {
+            getLogger().severe("Экономика '" + defaultEconomyProvider + "' недоступна! Плагин будет отключен.");
+            getServer().getPluginManager().disablePlugin(this);
+            return;
+        }
+        for (EconomyProvider provider : economyProviders.values()) {
+            if (provider != defaultProvider && isProviderUsed(provider.getName())) provider.setup();
         }
+        resolveCurrencies();
+        getServer().getPluginManager().registerEvents(new EconomyListener(this), this);
+        rewardBroadcaster = new RewardBroadcaster(this);
+        rewardPipeline = new RewardPipeline(this, rewardThreads, tierCacheSeconds);
 
+        playerDataPreloader = new PlayerDataPreloader(this);
+        getServer().getPluginManager().registerEvents(playerDataPreloader, this);
         playerListener = new PlayerListener(this);
         getServer().getPluginManager().registerEvents(playerListener, this);
+        setupAfkDetection();
         playerListener.initializeOnlinePlayers();
 
         TimeRewardCommand commandExecutor = new TimeRewardCommand(this);
@@ -98,6 +146,7 @@ public class TimeReward extends JavaPlugin {
 
         startRewardTimer();
         startSaveTask();
+        startArchiveTask();
 
         getLogger().info("TimeReward плагин включен!");
     }
@@ -106,6 +155,8 @@ public class TimeReward extends JavaPlugin {
     public void onDisable() {
         if (rewardTimerTask != null) rewardTimerTask.cancel();
         if (saveTask != null) saveTask.cancel();
+        if (archiveTask != null) archiveTask.cancel();
+        if (rewardPipeline != null) rewardPipeline.shutdown();
 
         for (Player player : Bukkit.getOnlinePlayers()) {
             playerListener.updatePlayerSessionTime(player.getUniqueId());
@@ -114,6 +165,23 @@ public class TimeReward extends JavaPlugin {
         getLogger().info("TimeReward плагин выключен!");
     }
 
+    private void setupAfkDetection() {
+        if (!afkDetection.equals("native")) {
+            essentials = getServer().getPluginManager().getPlugin("Essentials");
+        }
+
+        if (essentials != null) {
+            getServer().getPluginManager().registerEvents(new EssentialsAfkListener(this), this);
+            getLogger().info("EssentialsX найден, AFK проверка активна");
+        } else if (afkDetection.equals("essentials")) {
+            getLogger().warning("EssentialsX не найден, AFK проверка отключена");
+        } else {
+            activityTracker = new ActivityTracker(this, idleTimeout);
+            getServer().getPluginManager().registerEvents(activityTracker, this);
+            getLogger().info("Используется встроенная AFK проверка (простой " + idleTimeout + " сек)");
+        }
+    }
+
     private void setupDataFile() {
         dataFile = new File(getDataFolder(), "playerdata.yml");
 
@@ -127,6 +195,10 @@ public class TimeReward extends JavaPlugin {
         }
 
         dataConfig = YamlConfiguration.loadConfiguration(dataFile);
+
+        coldArchive = new ColdArchive(this, new File(getDataFolder(), "archive.dat.gz"));
+        coldArchive.loadIndexAsync();
+        playerDataExporter = new PlayerDataExporter(this);
     }
 
     private void loadConfig() {
@@ -135,10 +207,25 @@ public class TimeReward extends JavaPlugin {
 
         checkInterval = config.getLong("settings.check-interval", 60) * 20L;
         requireAfkCheck = config.getBoolean("settings.require-afk-check", true);
+        afkDetection = config.getString("settings.afk-detection", "auto").toLowerCase();
+        idleTimeout = config.getLong("settings.idle-timeout", 300);
+        if (activityTracker != null) activityTracker.setIdleTimeout(idleTimeout);
+        rewardThreads = config.getInt("settings.reward-threads", Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        tierCacheSeconds = config.getLong("settings.tier-cache-seconds", 300);
+        if (rewardPipeline != null) rewardPipeline.setTierCacheSeconds(tierCacheSeconds);
         broadcastRewards = config.getBoolean("settings.broadcast-rewards", false);
         debug = config.getBoolean("debug", false);
+        archiveEnabled = config.getBoolean("settings.archive.enabled", true);
+        archiveInactiveDays = config.getLong("settings.archive.inactive-days", 90);
+        defaultEconomyProvider = config.getString("settings.economy-provider", "coinsengine").toLowerCase();
         rewardMessage = ChatColor.translateAlternateColorCodes('&',
                 config.getString("messages.reward-message", "&aВы получили &6{amount} {currency} &aза время на сервере!"));
+        broadcastSummaryThreshold = config.getInt("settings.broadcast.summary-threshold", 5);
+        broadcastMergeCurrencies = config.getBoolean("settings.broadcast.merge-currencies", true);
+        broadcastMessage = ChatColor.translateAlternateColorCodes('&',
+                config.getString("messages.broadcast-message", "&a{player} получил &6{rewards} &aза время на сервере!"));
+        broadcastSummaryMessage = ChatColor.translateAlternateColorCodes('&',
+                config.getString("messages.broadcast-summary", "&a{count} игроков получили &6{rewards} &aза время на сервере!"));
 
         currencyConfigs = new HashMap<>();
         if (config.contains("settings.currencies")) {
@@ -146,11 +233,9 @@ public class TimeReward extends JavaPlugin {
                 String path = "settings.currencies." + currencyKey + ".";
                 long interval = config.getLong(path + "reward-interval", 60);
                 double defaultValue = config.getDouble(path + "reward-default", 1.0);
+                String provider = config.getString(path + "provider", defaultEconomyProvider).toLowerCase();
 
-                // Получаем символ валюты из CoinsEngine
-                String symbol = coinsEngine.getCurrencySymbol(currencyKey);
-
-                currencyConfigs.put(currencyKey, new CurrencyConfig(currencyKey, interval, defaultValue, symbol));
+                currencyConfigs.put(currencyKey, new CurrencyConfig(currencyKey, provider, interval, defaultValue));
             }
         }
 
@@ -159,22 +244,153 @@ public class TimeReward extends JavaPlugin {
         }
     }
 
+    /**
+     * Применяет изменения config.yml без сохранения и перечитывания данных игроков:
+     * валюты разрешаются заново, а задачи перезапускаются только при изменении их настроек.
+     */
     public void reloadPluginConfig() {
-        savePlayersData();
+        Map<String, CurrencyConfig> previousConfigs = currencyConfigs;
+        long previousCheckInterval = checkInterval;
+        boolean previousArchiveEnabled = archiveEnabled;
+        String previousAfkDetection = afkDetection;
+        int previousRewardThreads = rewardThreads;
+        boolean previousRequireAfkCheck = requireAfkCheck;
+        List<String> previousMessages = List.of(rewardMessage, broadcastMessage, broadcastSummaryMessage);
+
         loadConfig();
-        dataConfig = YamlConfiguration.loadConfiguration(dataFile);
-        getLogger().info("Конфигурация плагина перезагружена");
+
+        List<String> changes = new ArrayList<>();
+        for (CurrencyConfig currencyConfig : currencyConfigs.values()) {
+            CurrencyConfig previous = previousConfigs.get(currencyConfig.getCurrencyId());
+            if (previous == null) {
+                changes.add("добавлена валюта " + currencyConfig.getCurrencyId());
+            } else if (!previous.getProviderName().equals(currencyConfig.getProviderName())
+                    || previous.getRewardInterval() != currencyConfig.getRewardInterval()
+                    || previous.getRewardDefault() != currencyConfig.getRewardDefault()) {
+                changes.add("изменена валюта " + currencyConfig.getCurrencyId());
+            }
+        }
+        for (String currencyId : previousConfigs.keySet()) {
+            if (!currencyConfigs.containsKey(currencyId)) changes.add("удалена валюта " + currencyId);
+        }
+
+        for (EconomyProvider provider : economyProviders.values()) {
+            if (!provider.isEnabled() && isProviderUsed(provider.getName())) provider.setup();
+        }
+        // Экономические плагины перезагружают свои валюты без событий (например, /coins reload),
+        // поэтому при перезагрузке разрешаем заново все валюты
+        resolveCurrencies();
+
+        if (checkInterval != previousCheckInterval) {
+            if (rewardTimerTask != null) rewardTimerTask.cancel();
+            startRewardTimer();
+            changes.add("интервал проверки " + checkInterval / 20 + " сек");
+        }
+        if (archiveEnabled != previousArchiveEnabled) {
+            if (archiveTask != null) archiveTask.cancel();
+            archiveTask = null;
+            startArchiveTask();
+            changes.add(archiveEnabled ? "архивация включена" : "архивация выключена");
+        }
+        if (!previousMessages.equals(List.of(rewardMessage, broadcastMessage, broadcastSummaryMessage))) {
+            changes.add("сообщения");
+        }
+        if (previousRequireAfkCheck && !requireAfkCheck) {
+            // Игроки, ушедшие в AFK до выключения проверки, снова набирают время
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                if (activityTracker != null) activityTracker.clearIdle(player);
+                playerListener.setAfk(player, false);
+            }
+            changes.add("AFK проверка выключена");
+        } else if (!previousRequireAfkCheck && requireAfkCheck) {
+            changes.add("AFK проверка включена");
+        }
+        if (!afkDetection.equals(previousAfkDetection)) {
+            getLogger().warning("Смена afk-detection вступит в силу после перезапуска сервера");
+        }
+        if (rewardThreads != previousRewardThreads) {
+            getLogger().warning("Смена reward-threads вступит в силу после перезапуска сервера");
+        }
+
+        getLogger().info("Конфигурация плагина перезагружена" +
+                (changes.isEmpty() ? "" : ": " + String.join(", ", changes)));
+    }
+
+    // Доступно симуляции для подключения экономики в памяти до включения плагина
+    void registerEconomyProvider(EconomyProvider provider) {
+        economyProviders.put(provider.getName(), provider);
+    }
+
+    private boolean isProviderUsed(String providerName) {
+        if (providerName.equals(defaultEconomyProvider)) return true;
+        for (CurrencyConfig currencyConfig : currencyConfigs.values()) {
+            if (currencyConfig.getProviderName().equals(providerName)) return true;
+        }
+        return false;
+    }
+
+    // Разрешаем валюты один раз, чтобы не искать их при каждой выдаче награды
+    private void resolveCurrencies() {
+        for (CurrencyConfig currencyConfig : currencyConfigs.values()) {
+            resolveCurrency(currencyConfig);
+        }
+    }
+
+    private void resolveCurrency(CurrencyConfig currencyConfig) {
+        EconomyProvider provider = economyProviders.get(currencyConfig.getProviderName());
+        if (provider == null) {
+            getLogger().warning("Неизвестная экономика '" + currencyConfig.getProviderName() +
+                    "' у валюты " + currencyConfig.getCurrencyId());
+            currencyConfig.setCurrency(null);
+            return;
+        }
+        currencyConfig.setCurrency(provider.resolveCurrency(currencyConfig.getCurrencyId()));
+    }
+
+    public void refreshEconomyProvider(String providerName) {
+        EconomyProvider provider = economyProviders.get(providerName);
+        if (provider == null || !isProviderUsed(providerName)) return;
+
+        provider.setup();
+        resolveCurrencies();
+        getLogger().info("Валюты экономики '" + providerName + "' обновлены");
+    }
+
+    public void disableEconomyProvider(String providerName) {
+        EconomyProvider provider = economyProviders.get(providerName);
+        if (provider == null || !provider.isEnabled()) return;
+
+        provider.shutdown();
+        resolveCurrencies();
+        getLogger().warning("Экономика '" + providerName + "' отключена, награды в ее валютах не выдаются");
+    }
+
+    public EconomyProvider getEconomyProvider(String providerName) {
+        return economyProviders.get(providerName);
     }
 
     public PlayerListener getPlayerListener() {
         return playerListener;
     }
 
+    public PlayerDataPreloader getPlayerDataPreloader() {
+        return playerDataPreloader;
+    }
+
+    public RewardPipeline getRewardPipeline() {
+        return rewardPipeline;
+    }
+
+    public RewardBroadcaster getRewardBroadcaster() {
+        return rewardBroadcaster;
+    }
+
     public void savePlayersData() {
         synchronized (playerDataMap) {
             for (Map.Entry<UUID, PlayerData> entry : playerDataMap.entrySet()) {
-                savePlayerDataToFile(entry.getKey(), entry.getValue());
+                writePlayerData(entry.getKey(), entry.getValue());
             }
+            saveDataFile();
         }
         if (debug) getLogger().info("Данные всех онлайн игроков сохранены");
     }
@@ -183,25 +399,49 @@ public class TimeReward extends JavaPlugin {
         synchronized (playerDataMap) {
             PlayerData data = playerDataMap.get(uuid);
             if (data != null) {
-                savePlayerDataToFile(uuid, data);
+                writePlayerData(uuid, data);
+                saveDataFile();
             }
         }
     }
 
-    private void savePlayerDataToFile(UUID uuid, PlayerData data) {
+    private void writePlayerData(UUID uuid, PlayerData data) {
         String basePath = "players." + uuid.toString() + ".";
         dataConfig.set(basePath + "totalTime", data.getTotalTime());
         dataConfig.set(basePath + "periodTime", data.getPeriodTime());
+        dataConfig.set(basePath + "lastSeen", data.getLastSeen());
 
         dataConfig.set(basePath + "lastRewardTimes", null);
         for (Map.Entry<String, Long> entry : data.getLastRewardTimes().entrySet()) {
             dataConfig.set(basePath + "lastRewardTimes." + entry.getKey(), entry.getValue());
         }
+    }
+
+    /**
+     * Записывает данные онлайн игроков в дерево данных и сохраняет его копию в указанный файл.
+     * Под общей блокировкой дерево только сериализуется, запись на диск идет уже без нее.
+     *
+     * @return число игроков в снимке
+     */
+    int writePlayerDataSnapshot(File target) throws IOException {
+        String yaml;
+        int players;
+        synchronized (playerDataMap) {
+            for (Map.Entry<UUID, PlayerData> entry : playerDataMap.entrySet()) {
+                writePlayerData(entry.getKey(), entry.getValue());
+            }
+            yaml = dataConfig.saveToString();
+            players = dataConfig.contains("players") ? dataConfig.getConfigurationSection("players").getKeys(false).size() : 0;
+        }
+        Files.writeString(target.toPath(), yaml, StandardCharsets.UTF_8);
+        return players;
+    }
 
+    private void saveDataFile() {
         try {
             dataConfig.save(dataFile);
         } catch (IOException e) {
-            getLogger().severe("Ошибка при сохранении данных игрока " + uuid + ": " + e.getMessage());
+            getLogger().severe("Ошибка при сохранении данных игроков: " + e.getMessage());
         }
     }
 
@@ -215,59 +455,101 @@ public class TimeReward extends JavaPlugin {
         this.rewardTimerTask = new BukkitRunnable() {
             @Override
             public void run() {
-                for (Player player : Bukkit.getOnlinePlayers()) {
-                    checkAndRewardPlayer(player);
-                }
+                runRewardCycle();
             }
         }.runTaskTimer(this, checkInterval, checkInterval);
     }
 
+    CompletableFuture<Void> runRewardCycle() {
+        return rewardPipeline.runCycle(Bukkit.getOnlinePlayers());
+    }
+
     private void startSaveTask() {
         this.saveTask = new BukkitRunnable() {
             @Override
             public void run() {
-                synchronized (playerDataMap) {
-                    for (Player player : Bukkit.getOnlinePlayers()) {
-                        playerListener.updatePlayerSessionTime(player.getUniqueId());
-                    }
-                    savePlayersData();
-                }
+                runSaveCycle();
             }
         }.runTaskTimerAsynchronously(this, 20 * 60 * 10, 20 * 60 * 10);
     }
 
-    private void checkAndRewardPlayer(Player player) {
-        if (requireAfkCheck && isAfk(player)) return;
+    private void startArchiveTask() {
+        if (!archiveEnabled) return;
 
-        UUID playerId = player.getUniqueId();
+        this.archiveTask = new BukkitRunnable() {
+            @Override
+            public void run() {
+                archiveInactivePlayers();
+            }
+        }.runTaskTimerAsynchronously(this, 20 * 60 * 5, 20 * 60 * 60 * 24);
+    }
 
-        // ОБНОВЛЯЕМ время сессии перед проверкой наград
-        playerListener.updatePlayerSessionTime(playerId);
+    // Переносит давно не заходивших игроков из playerdata.yml в сжатый архив
+    void archiveInactivePlayers() {
+        long now = currentTimeSeconds();
+        long threshold = now - archiveInactiveDays * 86400;
+        List<ColdArchive.Record> records = new ArrayList<>();
+        boolean stamped = false;
 
-        PlayerData data = playerDataMap.get(playerId);
-        if (data == null) return;
+        synchronized (playerDataMap) {
+            if (!dataConfig.contains("players")) return;
 
-        for (CurrencyConfig currencyConfig : currencyConfigs.values()) {
-            checkCurrencyReward(player, data, currencyConfig);
+            for (String key : dataConfig.getConfigurationSection("players").getKeys(false)) {
+                UUID uuid;
+                try {
+                    uuid = UUID.fromString(key);
+                } catch (IllegalArgumentException e) {
+                    continue;
+                }
+                if (playerDataMap.containsKey(uuid)) continue;
+
+                String basePath = "players." + key + ".";
+                if (!dataConfig.contains(basePath + "lastSeen")) {
+                    // Данные старых версий без lastSeen: начинаем отсчет неактивности с текущего момента
+                    dataConfig.set(basePath + "lastSeen", now);
+                    stamped = true;
+                    continue;
+                }
+                if (dataConfig.getLong(basePath + "lastSeen") > threshold) continue;
+
+                records.add(new ColdArchive.Record(uuid, now, readPlayerData(uuid)));
+            }
+            if (records.isEmpty()) {
+                if (stamped) saveDataFile();
+                return;
+            }
+        }
+
+        // Запись и сжатие архива могут занять долго, общую блокировку на это время не держим
+        try {
+            coldArchive.append(records);
+        } catch (IOException e) {
+            getLogger().severe("Ошибка при записи архива игроков: " + e.getMessage());
+            return;
         }
-    }
 
-    private void checkCurrencyReward(Player player, PlayerData data, CurrencyConfig currencyConfig) {
-        Long lastRewardPlayTime = data.getLastRewardTime(currencyConfig.getCurrencyId());
-        if (lastRewardPlayTime == null) {
-            // Первая награда - устанавливаем текущее игровое время как точку отсчета
-            lastRewardPlayTime = data.getTotalTime();
-            data.setLastRewardTime(currencyConfig.getCurrencyId(), lastRewardPlayTime);
+        int archived = 0;
+        synchronized (playerDataMap) {
+            for (ColdArchive.Record record : records) {
+                String path = "players." + record.getUuid();
+                // Игрок мог зайти, пока писался архив: тогда актуальны данные в playerdata.yml
+                if (playerDataMap.containsKey(record.getUuid())
+                        || dataConfig.getLong(path + ".lastSeen") != record.getData().getLastSeen()) continue;
+                dataConfig.set(path, null);
+                archived++;
+            }
+            saveDataFile();
         }
 
-        long playTimeSinceLastReward = data.getTotalTime() - lastRewardPlayTime;
-        if (playTimeSinceLastReward >= currencyConfig.getRewardInterval()) {
-            double amount = getRewardAmount(player, currencyConfig.getCurrencyId());
-            if (amount > 0) {
-                giveReward(player, amount, currencyConfig.getCurrencyId());
-                // Устанавливаем текущее игровое время как новую точку отсчета
-                data.setLastRewardTime(currencyConfig.getCurrencyId(), data.getTotalTime());
+        getLogger().info("В архив перенесено " + archived + " неактивных игроков");
+    }
+
+    void runSaveCycle() {
+        synchronized (playerDataMap) {
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                playerListener.updatePlayerSessionTime(player.getUniqueId());
             }
+            savePlayersData();
         }
     }
 
@@ -293,27 +575,8 @@ public class TimeReward extends JavaPlugin {
         return maxAmount;
     }
 
-    private void giveReward(Player player, double amount, String currencyType) {
-        if (coinsEngine.depositPlayer(player, amount, currencyType)) {
-            CurrencyConfig config = currencyConfigs.get(currencyType);
-            String currencyName = config != null ? config.getCurrencySymbol() : currencyType;
-            String message = rewardMessage
-                    .replace("{amount}", String.format("%.0f", amount))
-                    .replace("{currency}", currencyName)
-                    .replace("{player}", player.getName());
-
-            player.sendMessage(message);
-
-            if (broadcastRewards) {
-                Bukkit.broadcastMessage(ChatColor.GREEN + player.getName() +
-                        " получил " + amount + " " + currencyName + " за время на сервере!");
-            }
-        } else {
-            getLogger().warning("Не удалось выдать " + currencyType + " игроку " + player.getName());
-        }
-    }
-
     public boolean isAfk(Player player) {
+        if (activityTracker != null) return activityTracker.isIdle(player);
         if (essentials == null) return false;
 
         try {
@@ -326,6 +589,10 @@ public class TimeReward extends JavaPlugin {
         }
     }
 
+    public ActivityTracker getActivityTracker() {
+        return activityTracker;
+    }
+
     public boolean isRequireAfkCheck() {
         return requireAfkCheck;
     }
@@ -334,29 +601,105 @@ public class TimeReward extends JavaPlugin {
         return debug;
     }
 
+    public Clock getClock() {
+        return clock;
+    }
+
+    // Позволяет подменить часы, например виртуальными в симуляции нагрузки
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    public long currentTimeSeconds() {
+        return clock.millis() / 1000;
+    }
+
+    public String getRewardMessage() {
+        return rewardMessage;
+    }
+
+    public boolean isBroadcastRewards() {
+        return broadcastRewards;
+    }
+
+    public int getBroadcastSummaryThreshold() {
+        return broadcastSummaryThreshold;
+    }
+
+    public boolean isBroadcastMergeCurrencies() {
+        return broadcastMergeCurrencies;
+    }
+
+    public String getBroadcastMessage() {
+        return broadcastMessage;
+    }
+
+    public String getBroadcastSummaryMessage() {
+        return broadcastSummaryMessage;
+    }
+
     public PlayerData getPlayerData(UUID uuid) {
         synchronized (playerDataMap) {
             return playerDataMap.get(uuid);
         }
     }
 
+    /**
+     * @throws UncheckedIOException если игрока нет в playerdata.yml, а архив недоступен
+     */
     public PlayerData getOrCreatePlayerData(UUID uuid) {
         synchronized (playerDataMap) {
             return playerDataMap.computeIfAbsent(uuid, k -> {
                 // Загружаем данные из файла только при первом обращении
-                return loadPlayerDataFromFile(uuid);
+                try {
+                    return loadPlayerDataFromFile(uuid);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
             });
         }
     }
 
-    private PlayerData loadPlayerDataFromFile(UUID uuid) {
-        String basePath = "players." + uuid.toString() + ".";
+    /**
+     * Кладет в память данные, загруженные заранее {@link PlayerDataPreloader}.
+     * Если данные игрока уже в памяти, возвращает их.
+     */
+    public PlayerData installPlayerData(UUID uuid, PlayerData data) {
+        synchronized (playerDataMap) {
+            return playerDataMap.computeIfAbsent(uuid, k -> data);
+        }
+    }
 
-        if (!dataConfig.contains(basePath + "totalTime")) {
-            // Если данных нет в файле, создаем новые
-            return new PlayerData(0, 0, new HashMap<>());
+    /**
+     * Читает данные игрока для предзагрузки вне основного потока.
+     * Общая блокировка держится только на время чтения из дерева playerdata.yml,
+     * поиск в архиве выполняется без нее.
+     *
+     * @return данные или null, если игрок уже в памяти (например, перезаходит, пока старая сессия не закрыта)
+     * @throws IOException если игрока нет в playerdata.yml, а архив недоступен
+     */
+    PlayerData preloadPlayerData(UUID uuid) throws IOException {
+        synchronized (playerDataMap) {
+            if (playerDataMap.containsKey(uuid)) return null;
+            if (dataConfig.contains("players." + uuid + ".totalTime")) return readPlayerData(uuid);
         }
 
+        PlayerData archived = restoreFromArchive(uuid);
+        return archived != null ? archived : createPlayerData();
+    }
+
+    private PlayerData loadPlayerDataFromFile(UUID uuid) throws IOException {
+        if (!dataConfig.contains("players." + uuid + ".totalTime")) {
+            // Игрок мог быть перенесен в архив за неактивность
+            PlayerData archived = restoreFromArchive(uuid);
+            return archived != null ? archived : createPlayerData();
+        }
+        return readPlayerData(uuid);
+    }
+
+    // Запись игрока, которая точно есть в playerdata.yml
+    private PlayerData readPlayerData(UUID uuid) {
+        String basePath = "players." + uuid.toString() + ".";
         Map<String, Long> lastRewardTimes = new HashMap<>();
         if (dataConfig.contains(basePath + "lastRewardTimes")) {
             for (String currency : dataConfig.getConfigurationSection(basePath + "lastRewardTimes").getKeys(false)) {
@@ -367,10 +710,47 @@ public class TimeReward extends JavaPlugin {
         return new PlayerData(
                 dataConfig.getLong(basePath + "totalTime", 0),
                 dataConfig.getLong(basePath + "periodTime", 0),
+                dataConfig.getLong(basePath + "lastSeen", 0),
                 lastRewardTimes
         );
     }
 
+    // Если данных нет в файле, создаем новые: интервалы наград отсчитываются с нуля
+    private PlayerData createPlayerData() {
+        Map<String, Long> lastRewardTimes = new HashMap<>();
+        for (String currencyId : currencyConfigs.keySet()) {
+            lastRewardTimes.put(currencyId, 0L);
+        }
+        return new PlayerData(0, 0, 0, lastRewardTimes);
+    }
+
+    private PlayerData restoreFromArchive(UUID uuid) throws IOException {
+        PlayerData data = findArchivedPlayerData(uuid);
+        if (data != null) getLogger().info("Данные игрока " + uuid + " восстановлены из архива");
+        return data;
+    }
+
+    // Данные архивного игрока с учетом сбросов периодического времени после архивации
+    private PlayerData findArchivedPlayerData(UUID uuid) throws IOException {
+        ColdArchive.Record record = coldArchive.find(uuid);
+        if (record == null) return null;
+
+        PlayerData data = record.getData();
+        long periodResetAt;
+        synchronized (playerDataMap) {
+            periodResetAt = dataConfig.getLong("periodResetAt", 0);
+        }
+        // Периодическое время сбрасывалось, пока игрок был в архиве
+        if (record.getArchivedAt() < periodResetAt) {
+            data.setPeriodTime(0);
+        }
+        return data;
+    }
+
+    public ColdArchive getColdArchive() {
+        return coldArchive;
+    }
+
     // API методы
     public Map<UUID, Long> getAllPlayersTotalTime() {
         Map<UUID, Long> result = new HashMap<>();
@@ -439,18 +819,22 @@ public class TimeReward extends JavaPlugin {
             for (PlayerData data : playerDataMap.values()) {
                 data.setPeriodTime(0);
             }
-        }
 
-        // Сбрасываем периодическое время для всех игроков в файле
-        if (dataConfig.contains("players")) {
-            for (String key : dataConfig.getConfigurationSection("players").getKeys(false)) {
-                dataConfig.set("players." + key + ".periodTime", 0);
-            }
-            try {
-                dataConfig.save(dataFile);
-            } catch (IOException e) {
-                getLogger().severe("Ошибка при сбросе периодического времени: " + e.getMessage());
+            // Сбрасываем периодическое время для всех игроков в файле
+            if (dataConfig.contains("players")) {
+                for (String key : dataConfig.getConfigurationSection("players").getKeys(false)) {
+                    dataConfig.set("players." + key + ".periodTime", 0);
+                }
             }
+            // Архивные игроки получат нулевое периодическое время при восстановлении
+            dataConfig.set("periodResetAt", currentTimeSeconds());
+        }
+        // Предзагруженные до сброса данные устарели
+        playerDataPreloader.invalidateAll();
+        try {
+            dataConfig.save(dataFile);
+        } catch (IOException e) {
+            getLogger().severe("Ошибка при сбросе периодического времени: " + e.getMessage());
         }
 
         getLogger().info("Периодическое время всех игроков сброшено");
@@ -463,11 +847,21 @@ public class TimeReward extends JavaPlugin {
             if (data != null) {
                 return data.getTotalTime();
             }
+
+            // Если не в памяти, загружаем из файла
+            String path = "players." + uuid.toString() + ".totalTime";
+            if (dataConfig.contains(path)) return dataConfig.getLong(path);
         }
 
-        // Если не в памяти, загружаем из файла
-        String basePath = "players." + uuid.toString() + ".";
-        return dataConfig.getLong(basePath + "totalTime", 0);
+        // Давно не заходивший игрок мог быть перенесен в архив
+        try {
+            PlayerData archived = findArchivedPlayerData(uuid);
+            return archived != null ? archived.getTotalTime() : 0;
+        } catch (IOException e) {
+            // Только чтение: данные игрока при этом не перезаписываются
+            getLogger().severe("Архив недоступен, время игрока " + uuid + " неизвестно: " + e.getMessage());
+            return 0;
+        }
     }
 
     public long getPlayerPeriodTime(UUID uuid) {
@@ -477,14 +871,40 @@ public class TimeReward extends JavaPlugin {
             if (data != null) {
                 return data.getPeriodTime();
             }
+
+            // Если не в памяти, загружаем из файла
+            String path = "players." + uuid.toString() + ".periodTime";
+            if (dataConfig.contains(path)) return dataConfig.getLong(path);
         }
 
-        // Если не в памяти, загружаем из файла
-        String basePath = "players." + uuid.toString() + ".";
-        return dataConfig.getLong(basePath + "periodTime", 0);
+        // Давно не заходивший игрок мог быть перенесен в архив
+        try {
+            PlayerData archived = findArchivedPlayerData(uuid);
+            return archived != null ? archived.getPeriodTime() : 0;
+        } catch (IOException e) {
+            // Только чтение: данные игрока при этом не перезаписываются
+            getLogger().severe("Архив недоступен, время игрока " + uuid + " неизвестно: " + e.getMessage());
+            return 0;
+        }
     }
 
     public CurrencyConfig getCurrencyConfig(String currencyType) {
         return currencyConfigs.get(currencyType);
     }
+
+    public Collection<CurrencyConfig> getCurrencyConfigs() {
+        return currencyConfigs.values();
+    }
+
+    public Set<String> getCurrencyIds() {
+        return currencyConfigs.keySet();
+    }
+
+    /**
+     * Выгружает totalTime, periodTime и lastRewardTimes всех игроков (включая архивных)
+     * в plugins/TimeReward/exports в фоновом потоке.
+     */
+    public CompletableFuture<File> exportPlayerData(PlayerDataExporter.Format format, Consumer<String> progress) {
+        return playerDataExporter.export(format, progress);
+    }
 }
@@ -16,7 +16,7 @@ import java.util.stream.Collectors;
 
 public class TimeRewardCommand implements CommandExecutor, TabCompleter {
     private final TimeReward plugin;
-    private final List<String> adminCommands = Arrays.asList("reload", "stats");
+    private final List<String> adminCommands = Arrays.asList("reload", "stats", "export");
     private final List<String> playerCommands = List.of("stats");
 
     public TimeRewardCommand(TimeReward plugin) {
@@ -55,6 +55,19 @@ public class TimeRewardCommand implements CommandExecutor, TabCompleter {
                 }
                 break;
 
+            case "export":
+                if (!sender.hasPermission("timereward.admin")) {
+                    sender.sendMessage(ChatColor.RED + "Недостаточно прав!");
+                    return true;
+                }
+                PlayerDataExporter.Format format = args.length == 2 ? PlayerDataExporter.Format.fromString(args[1]) : null;
+                if (format == null) {
+                    sender.sendMessage(ChatColor.RED + "Использование: /timereward export <csv|jsonl>");
+                    return true;
+                }
+                startExport(sender, format);
+                break;
+
             case "help":
                 sendHelp(sender);
                 break;
@@ -87,6 +100,8 @@ public class TimeRewardCommand implements CommandExecutor, TabCompleter {
                     .collect(Collectors.toList());
             StringUtil.copyPartialMatches(partialName, playerNames, completions);
             Collections.sort(completions);
+        } else if (args.length == 2 && args[0].equalsIgnoreCase("export") && sender.hasPermission("timereward.admin")) {
+            StringUtil.copyPartialMatches(args[1], Arrays.asList("csv", "jsonl"), completions);
         }
         return completions;
     }
@@ -96,6 +111,7 @@ public class TimeRewardCommand implements CommandExecutor, TabCompleter {
         if (sender.hasPermission("timereward.admin")) {
             sender.sendMessage(ChatColor.YELLOW + "/timereward reload - Перезагрузить конфиг");
             sender.sendMessage(ChatColor.YELLOW + "/timereward stats [игрок] - Статистика игрока");
+            sender.sendMessage(ChatColor.YELLOW + "/timereward export <csv|jsonl> - Выгрузить данные всех игроков");
         }
         if (sender instanceof Player) {
             sender.sendMessage(ChatColor.YELLOW + "/timereward stats - Ваша статистика");
@@ -103,6 +119,18 @@ public class TimeRewardCommand implements CommandExecutor, TabCompleter {
         sender.sendMessage(ChatColor.YELLOW + "/timereward help - Показать эту помощь");
     }
 
+    private void startExport(CommandSender sender, PlayerDataExporter.Format format) {
+        sender.sendMessage(ChatColor.GREEN + "Выгрузка данных игроков запущена...");
+        plugin.exportPlayerData(format, message -> Bukkit.getScheduler().runTask(plugin,
+                        () -> sender.sendMessage(ChatColor.YELLOW + message)))
+                .exceptionally(e -> {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    Bukkit.getScheduler().runTask(plugin,
+                            () -> sender.sendMessage(ChatColor.RED + "Ошибка выгрузки: " + cause.getMessage()));
+                    return null;
+                });
+    }
+
     private void showStats(CommandSender sender, Player target) {
         PlayerData data = plugin.getPlayerData(target.getUniqueId());
         if (data == null) {
@@ -126,7 +154,7 @@ public class TimeRewardCommand implements CommandExecutor, TabCompleter {
 
     private String formatTime(long timestamp) {
         if (timestamp == 0) return "никогда";
-        long diff = (System.currentTimeMillis() / 1000) - timestamp;
+        long diff = plugin.currentTimeSeconds() - timestamp;
         if (diff < 60) return diff + " сек назад";
         if (diff < 3600) return (diff / 60) + " мин назад";
         if (diff < 86400) return (diff / 3600) + " ч назад";
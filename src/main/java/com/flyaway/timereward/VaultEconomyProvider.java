@@ -0,0 +1,88 @@
+package com.flyaway.timereward;
+
+import net.milkbowl.vault.economy.Economy;
+import net.milkbowl.vault.economy.EconomyResponse;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.RegisteredServiceProvider;
+
+/**
+ * Vault поддерживает только одну валюту, поэтому любая валюта из конфига
+ * с этим провайдером выдается через зарегистрированную экономику Vault.
+ */
+public class VaultEconomyProvider implements EconomyProvider {
+    private final TimeReward plugin;
+    private Economy economy;
+
+    public VaultEconomyProvider(TimeReward plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public String getName() {
+        return "vault";
+    }
+
+    @Override
+    public boolean setup() {
+        economy = null;
+        try {
+            if (plugin.getServer().getPluginManager().getPlugin("Vault") == null) {
+                plugin.getLogger().info("Vault не найден");
+                return false;
+            }
+
+            RegisteredServiceProvider<Economy> registration =
+                    plugin.getServer().getServicesManager().getRegistration(Economy.class);
+            if (registration == null) {
+                plugin.getLogger().info("Vault найден, но экономика не зарегистрирована");
+                return false;
+            }
+
+            economy = registration.getProvider();
+            plugin.getLogger().info("Успешная интеграция с Vault (" + economy.getName() + ")");
+
+        } catch (Exception e) {
+            plugin.getLogger().warning("Ошибка при подключении к Vault: " + e.getMessage());
+        }
+        return economy != null;
+    }
+
+    @Override
+    public void shutdown() {
+        economy = null;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return economy != null;
+    }
+
+    @Override
+    public CurrencyHandle resolveCurrency(String currencyId) {
+        if (economy == null) return null;
+
+        String symbol = economy.currencyNamePlural();
+        if (symbol == null || symbol.isEmpty()) symbol = currencyId;
+        return new CurrencyHandle(this, currencyId, symbol, economy);
+    }
+
+    @Override
+    public boolean deposit(Player player, CurrencyHandle currencyHandle, double amount) {
+        Economy economy = (Economy) currencyHandle.getBackend();
+
+        try {
+            EconomyResponse response = economy.depositPlayer(player, amount);
+            if (!response.transactionSuccess()) {
+                plugin.getLogger().warning("Vault отклонил выдачу игроку " + player.getName() + ": " + response.errorMessage);
+                return false;
+            }
+
+            if (plugin.isDebug())
+                plugin.getLogger().info("Выдано " + amount + " " + currencyHandle.getSymbol() + " игроку " + player.getName());
+            return true;
+        } catch (Exception e) {
+            plugin.getLogger().warning("Ошибка при выдаче валюты игроку " + player.getName() + ": " + e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.flyaway.timereward;
+
+import org.bukkit.entity.Player;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * Экономика в памяти для тестов и нагрузочных прогонов без реального
+ * экономического плагина. Балансы не сохраняются между перезапусками.
+ */
+public class InMemoryEconomyProvider implements EconomyProvider {
+    private final Map<UUID, Map<String, Double>> balances = new ConcurrentHashMap<>();
+    private final Map<String, DoubleAdder> totals = new ConcurrentHashMap<>();
+    private final AtomicLong depositCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+
+    @Override
+    public String getName() {
+        return "memory";
+    }
+
+    @Override
+    public boolean setup() {
+        return true;
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public CurrencyHandle resolveCurrency(String currencyId) {
+        return new CurrencyHandle(this, currencyId, currencyId, totals.computeIfAbsent(currencyId, k -> new DoubleAdder()));
+    }
+
+    @Override
+    public boolean deposit(Player player, CurrencyHandle currency, double amount) {
+        add(player.getUniqueId(), currency, amount);
+        return true;
+    }
+
+    @Override
+    public void depositBatch(CurrencyHandle currency, List<Deposit> deposits) {
+        for (Deposit deposit : deposits) {
+            add(deposit.getPlayer().getUniqueId(), currency, deposit.getAmount());
+            deposit.setSuccess(true);
+        }
+        batchCount.incrementAndGet();
+    }
+
+    private void add(UUID playerId, CurrencyHandle currency, double amount) {
+        balances.computeIfAbsent(playerId, k -> new ConcurrentHashMap<>())
+                .merge(currency.getId(), amount, Double::sum);
+        ((DoubleAdder) currency.getBackend()).add(amount);
+        depositCount.incrementAndGet();
+    }
+
+    public double getBalance(UUID playerId, String currencyId) {
+        Map<String, Double> playerBalances = balances.get(playerId);
+        if (playerBalances == null) return 0;
+        return playerBalances.getOrDefault(currencyId, 0.0);
+    }
+
+    public double getTotalDeposited(String currencyId) {
+        DoubleAdder total = totals.get(currencyId);
+        return total != null ? total.sum() : 0;
+    }
+
+    public long getDepositCount() {
+        return depositCount.get();
+    }
+
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    public void reset() {
+        balances.clear();
+        totals.values().forEach(DoubleAdder::reset);
+        depositCount.set(0);
+        batchCount.set(0);
+    }
+}
@@ -0,0 +1,517 @@
+package com.flyaway.timereward;
+
+import com.flyaway.timereward.TimeReward.CurrencyConfig;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.mockbukkit.mockbukkit.MockBukkit;
+import org.mockbukkit.mockbukkit.ServerMock;
+import org.mockbukkit.mockbukkit.entity.PlayerMock;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Детерминированная симуляция нагрузки: прогоняет сутки (или другой срок) активности
+ * синтетических игроков на MockBukkit с виртуальными часами и экономикой в памяти,
+ * замеряет стоимость циклов наград и сохранений и сверяет выданные награды с начисленным временем.
+ * С флагом {@code -Parchive} затем переносит тех же игроков в архив, восстанавливает их,
+ * сжимает архив и проверяет восстановление после повреждения.
+ * <p>
+ * Запуск: {@code ./gradlew simulate -Pplayers=5000 -Phours=24 -Pseed=42 -PcheckInterval=60 -Pstrict -Parchive}
+ */
+public final class RewardSimulation {
+    private static final long START_SECONDS = 1_700_000_000L;
+    private static final long SAVE_INTERVAL = 600;
+    private static final long ARCHIVE_INACTIVE_DAYS = 90;
+
+    // Средние длительности состояний в секундах
+    private static final double MEAN_OFFLINE = 3 * 3600;
+    private static final double MEAN_ACTIVE = 25 * 60;
+    private static final double MEAN_AFK = 10 * 60;
+    private static final double QUIT_CHANCE = 0.35;
+
+    private enum State {OFFLINE, ACTIVE, AFK}
+
+    private static final class SimPlayer {
+        final UUID uuid;
+        final String name;
+        State state = State.OFFLINE;
+        long nextEventTime;
+        long activeSince;
+        long activeSeconds;
+        PlayerMock player;
+
+        SimPlayer(UUID uuid, String name) {
+            this.uuid = uuid;
+            this.name = name;
+        }
+    }
+
+    private final int players;
+    private final long hours;
+    private final long checkInterval;
+    private final boolean archive;
+    private final Random random;
+
+    private final VirtualClock clock = new VirtualClock(START_SECONDS * 1000);
+    private final com.sun.management.ThreadMXBean threadBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private ServerMock server;
+    private TimeReward plugin;
+    private InMemoryEconomyProvider economy;
+
+    // Фаза выдачи наград выполняется здесь, в потоке симуляции, как на основном потоке сервера
+    private final BlockingQueue<Runnable> mainThreadTasks = new LinkedBlockingQueue<>();
+
+    private final Stats cycleStats = new Stats();
+    private final Stats mainThreadStats = new Stats();
+    private final Stats saveStats = new Stats();
+    private long playersChecked;
+    private long events;
+
+    private RewardSimulation(int players, long hours, long checkInterval, long seed, boolean archive) {
+        this.players = players;
+        this.hours = hours;
+        this.checkInterval = checkInterval;
+        this.archive = archive;
+        this.random = new Random(seed);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int players = Integer.parseInt(option(args, "players", "5000"));
+        long hours = Long.parseLong(option(args, "hours", "24"));
+        long checkInterval = Long.parseLong(option(args, "check-interval", "60"));
+        long seed = Long.parseLong(option(args, "seed", "42"));
+        boolean strict = Arrays.asList(args).contains("--strict");
+        boolean archive = Arrays.asList(args).contains("--archive");
+
+        boolean ok = new RewardSimulation(players, hours, checkInterval, seed, archive).run();
+        System.exit(strict && !ok ? 1 : 0);
+    }
+
+    private static String option(String[] args, String name, String defaultValue) {
+        String prefix = "--" + name + "=";
+        for (String arg : args) {
+            if (arg.startsWith(prefix)) return arg.substring(prefix.length());
+        }
+        return defaultValue;
+    }
+
+    private boolean run() throws Exception {
+        server = MockBukkit.mock();
+        try {
+            plugin = loadPlugin();
+            economy = (InMemoryEconomyProvider) plugin.getEconomyProvider("memory");
+            plugin.getRewardPipeline().setMainThreadExecutor(mainThreadTasks::add);
+
+            List<SimPlayer> simPlayers = new ArrayList<>(players);
+            PriorityQueue<SimPlayer> queue = new PriorityQueue<>((a, b) -> Long.compare(a.nextEventTime, b.nextEventTime));
+            for (int i = 0; i < players; i++) {
+                SimPlayer simPlayer = new SimPlayer(new UUID(0x5EED, i), "sim" + i);
+                simPlayer.nextEventTime = START_SECONDS + exponential(MEAN_OFFLINE / 4);
+                simPlayers.add(simPlayer);
+                queue.add(simPlayer);
+            }
+
+            long end = START_SECONDS + hours * 3600;
+            long nextCycle = START_SECONDS + checkInterval;
+            long nextSave = START_SECONDS + SAVE_INTERVAL;
+            long wallStart = System.nanoTime();
+
+            while (true) {
+                long nextEvent = queue.isEmpty() ? Long.MAX_VALUE : queue.peek().nextEventTime;
+                long time = Math.min(nextEvent, Math.min(nextCycle, nextSave));
+                if (time > end) break;
+                clock.setSeconds(time);
+
+                if (time == nextEvent) {
+                    SimPlayer simPlayer = queue.poll();
+                    handleEvent(simPlayer, time);
+                    queue.add(simPlayer);
+                } else if (time == nextCycle) {
+                    measureCycle();
+                    nextCycle += checkInterval;
+                } else {
+                    measureSave();
+                    nextSave += SAVE_INTERVAL;
+                }
+            }
+            long wallNanos = System.nanoTime() - wallStart;
+
+            // Возвращаем всех в сеть и проверяем накопленное, чтобы сверить выплаты с начисленным временем
+            clock.setSeconds(end);
+            for (SimPlayer simPlayer : simPlayers) {
+                if (simPlayer.state == State.ACTIVE) {
+                    simPlayer.activeSeconds += end - simPlayer.activeSince;
+                    simPlayer.activeSince = end;
+                } else if (simPlayer.state == State.OFFLINE) {
+                    join(simPlayer, end);
+                }
+            }
+            awaitCycle(plugin.runRewardCycle());
+
+            report(wallNanos);
+            boolean ok = verify(simPlayers);
+            if (archive) ok &= verifyArchive(simPlayers);
+            return ok;
+        } finally {
+            MockBukkit.unmock();
+        }
+    }
+
+    private TimeReward loadPlugin() throws Exception {
+        String descriptionYaml;
+        try (InputStream in = Objects.requireNonNull(RewardSimulation.class.getClassLoader().getResourceAsStream("plugin.yml"))) {
+            descriptionYaml = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        PluginDescriptionFile description = new PluginDescriptionFile(new StringReader(descriptionYaml));
+
+        TimeReward loaded = (TimeReward) server.getPluginManager().loadPlugin(TimeReward.class, description, new Object[0]);
+        writeConfig(loaded.getDataFolder());
+        loaded.setClock(clock);
+        loaded.registerEconomyProvider(new InMemoryEconomyProvider());
+        server.getPluginManager().enablePlugin(loaded);
+        return loaded;
+    }
+
+    private void writeConfig(File dataFolder) throws IOException {
+        dataFolder.mkdirs();
+        String config = String.join("\n",
+                "debug: false",
+                "settings:",
+                "  check-interval: " + checkInterval,
+                "  economy-provider: memory",
+                "  currencies:",
+                "    coins:",
+                "      reward-interval: 60",
+                "      reward-default: 1.0",
+                "    money:",
+                "      reward-interval: 30",
+                "      reward-default: 30.0",
+                "  require-afk-check: true",
+                // AFK задается симуляцией напрямую через PlayerListener.setAfk
+                "  afk-detection: essentials",
+                "  archive:",
+                "    enabled: true",
+                "    inactive-days: " + ARCHIVE_INACTIVE_DAYS,
+                "  broadcast-rewards: false",
+                "");
+        Files.writeString(new File(dataFolder, "config.yml").toPath(), config);
+    }
+
+    private void handleEvent(SimPlayer simPlayer, long time) {
+        events++;
+        switch (simPlayer.state) {
+            case OFFLINE -> {
+                join(simPlayer, time);
+                simPlayer.nextEventTime = time + exponential(MEAN_ACTIVE);
+            }
+            case ACTIVE -> {
+                simPlayer.activeSeconds += time - simPlayer.activeSince;
+                if (random.nextDouble() < QUIT_CHANCE) {
+                    quit(simPlayer);
+                    simPlayer.nextEventTime = time + exponential(MEAN_OFFLINE);
+                } else {
+                    simPlayer.state = State.AFK;
+                    plugin.getPlayerListener().setAfk(simPlayer.player, true);
+                    simPlayer.nextEventTime = time + exponential(MEAN_AFK);
+                }
+            }
+            case AFK -> {
+                if (random.nextDouble() < QUIT_CHANCE) {
+                    quit(simPlayer);
+                    simPlayer.nextEventTime = time + exponential(MEAN_OFFLINE);
+                } else {
+                    simPlayer.state = State.ACTIVE;
+                    simPlayer.activeSince = time;
+                    plugin.getPlayerListener().setAfk(simPlayer.player, false);
+                    simPlayer.nextEventTime = time + exponential(MEAN_ACTIVE);
+                }
+            }
+        }
+    }
+
+    private void join(SimPlayer simPlayer, long time) {
+        simPlayer.player = new PlayerMock(server, simPlayer.name, simPlayer.uuid);
+        server.addPlayer(simPlayer.player);
+        simPlayer.state = State.ACTIVE;
+        simPlayer.activeSince = time;
+    }
+
+    private void quit(SimPlayer simPlayer) {
+        simPlayer.player.disconnect();
+        simPlayer.player = null;
+        simPlayer.state = State.OFFLINE;
+    }
+
+    private long exponential(double mean) {
+        return Math.max(1, Math.round(-mean * Math.log(1 - random.nextDouble())));
+    }
+
+    private void measureCycle() {
+        int online = server.getOnlinePlayers().size();
+        long allocated = threadBean.getTotalThreadAllocatedBytes();
+        long allocatedAllThreads = allThreadsAllocatedBytes();
+        long started = System.nanoTime();
+        awaitCycle(plugin.runRewardCycle());
+        long elapsed = System.nanoTime() - started;
+        // Поток симуляции играет роль основного потока сервера, остальное выделили потоки расчета
+        cycleStats.add(elapsed, allThreadsAllocatedBytes() - allocatedAllThreads);
+        mainThreadStats.add(plugin.getRewardPipeline().getLastMainThreadNanos(),
+                threadBean.getTotalThreadAllocatedBytes() - allocated);
+        playersChecked += online;
+    }
+
+    private void awaitCycle(CompletableFuture<Void> cycle) {
+        try {
+            while (!cycle.isDone() || !mainThreadTasks.isEmpty()) {
+                Runnable task = mainThreadTasks.poll(10, TimeUnit.MILLISECONDS);
+                if (task != null) task.run();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        cycle.join();
+    }
+
+    private long allThreadsAllocatedBytes() {
+        long total = 0;
+        for (long bytes : threadBean.getThreadAllocatedBytes(threadBean.getAllThreadIds())) {
+            if (bytes > 0) total += bytes;
+        }
+        return total;
+    }
+
+    private void measureSave() {
+        long allocated = threadBean.getTotalThreadAllocatedBytes();
+        long started = System.nanoTime();
+        plugin.runSaveCycle();
+        saveStats.add(System.nanoTime() - started, threadBean.getTotalThreadAllocatedBytes() - allocated);
+    }
+
+    private void report(long wallNanos) {
+        double cycleSeconds = cycleStats.totalNanos / 1e9;
+        System.out.println("=== Симуляция TimeReward ===");
+        System.out.printf("Игроков: %d, срок: %d ч, check-interval: %d с%n", players, hours, checkInterval);
+        System.out.printf("Событий (входы/выходы/AFK): %d, реальное время: %.1f с%n", events, wallNanos / 1e9);
+        System.out.printf("Пропускная способность циклов: %.0f игроков/с%n",
+                cycleSeconds > 0 ? playersChecked / cycleSeconds : 0);
+        cycleStats.print("Цикл наград (всего)");
+        mainThreadStats.print("Цикл наград (основной поток)");
+        saveStats.print("Сохранение");
+        System.out.printf("Размер playerdata.yml: %d КБ%n", new File(plugin.getDataFolder(), "playerdata.yml").length() / 1024);
+    }
+
+    private boolean verify(List<SimPlayer> simPlayers) {
+        long timeMismatches = 0;
+        long rewardMismatches = 0;
+        for (String currencyId : List.of("coins", "money")) {
+            CurrencyConfig currencyConfig = plugin.getCurrencyConfig(currencyId);
+            double expectedTotal = 0;
+            double paidTotal = 0;
+            for (SimPlayer simPlayer : simPlayers) {
+                double expected = (simPlayer.activeSeconds / currencyConfig.getRewardInterval()) * currencyConfig.getRewardDefault();
+                double paid = economy.getBalance(simPlayer.uuid, currencyId);
+                expectedTotal += expected;
+                paidTotal += paid;
+                if (Math.abs(expected - paid) > 1e-6) rewardMismatches++;
+            }
+            System.out.printf("Валюта %s: начислено %.0f, выплачено %.0f%n", currencyId, expectedTotal, paidTotal);
+        }
+
+        for (SimPlayer simPlayer : simPlayers) {
+            PlayerData data = plugin.getPlayerData(simPlayer.uuid);
+            if (data == null || data.getTotalTime() != simPlayer.activeSeconds) timeMismatches++;
+        }
+
+        System.out.printf("Расхождений во времени: %d, в наградах: %d%n", timeMismatches, rewardMismatches);
+        boolean ok = timeMismatches == 0 && rewardMismatches == 0;
+        System.out.println(ok ? "Выплаты совпадают с начисленным временем" : "ОБНАРУЖЕНЫ РАСХОЖДЕНИЯ");
+        return ok;
+    }
+
+    // Архивация, восстановление при входе, сжатие и повреждения архива на игроках основного прогона
+    private boolean verifyArchive(List<SimPlayer> simPlayers) throws IOException {
+        System.out.println("=== Архив игроков ===");
+        ColdArchive coldArchive = plugin.getColdArchive();
+        long mismatches = 0;
+
+        for (SimPlayer simPlayer : simPlayers) {
+            if (simPlayer.state != State.OFFLINE) quit(simPlayer);
+        }
+        archiveInactivePlayers();
+        int archived = coldArchive.size();
+        mismatches += countArchivedMismatches(simPlayers);
+        System.out.printf("Перенесено в архив: %d из %d, размер архива: %d КБ%n",
+                archived, players, coldArchive.getFile().length() / 1024);
+
+        // Повторная архивация половины игроков копит устаревшие записи, пока архив не сожмется
+        long restoreNanos = 0;
+        int restoredOnJoin = 0;
+        long lengthBeforeCompaction = 0;
+        for (int round = 0; round < 3; round++) {
+            List<SimPlayer> returning = new ArrayList<>();
+            for (int i = round % 2; i < simPlayers.size(); i += 2) returning.add(simPlayers.get(i));
+
+            long started = System.nanoTime();
+            for (SimPlayer simPlayer : returning) {
+                join(simPlayer, clock.getSeconds());
+                PlayerData data = plugin.getPlayerData(simPlayer.uuid);
+                if (data == null || data.getTotalTime() != simPlayer.activeSeconds) mismatches++;
+            }
+            restoreNanos += System.nanoTime() - started;
+            restoredOnJoin += returning.size();
+            for (SimPlayer simPlayer : returning) quit(simPlayer);
+
+            if (round == 2) lengthBeforeCompaction = coldArchive.getFile().length();
+            archiveInactivePlayers();
+        }
+        // Третья повторная архивация превышает порог в два раза больше записей, чем игроков
+        boolean compacted = coldArchive.getFile().length() < lengthBeforeCompaction;
+        int[] current = {0};
+        coldArchive.forEach(record -> current[0]++);
+        mismatches += countArchivedMismatches(simPlayers);
+        System.out.printf("Восстановлено при входе: %d, среднее %.3f мс; архив сжат: %s, актуальных записей: %d%n",
+                restoredOnJoin, restoreNanos / 1e6 / Math.max(1, restoredOnJoin),
+                compacted ? "да" : "нет", current[0]);
+
+        // Обрезанный хвост: целые блоки остаются, поврежденный переносится в отдельный файл
+        File corrupt = new File(plugin.getDataFolder(), "archive-corrupt.dat.gz");
+        Files.copy(coldArchive.getFile().toPath(), corrupt.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        try (RandomAccessFile raf = new RandomAccessFile(corrupt, "rw")) {
+            raf.setLength(raf.length() - 16);
+        }
+        ColdArchive recovered = loadArchive(corrupt);
+        int restored = 0;
+        SimPlayer lost = null;
+        for (SimPlayer simPlayer : simPlayers) {
+            ColdArchive.Record record = recovered.find(simPlayer.uuid);
+            if (record == null) {
+                lost = simPlayer;
+            } else if (record.getData().getTotalTime() != simPlayer.activeSeconds) {
+                mismatches++;
+            } else {
+                restored++;
+            }
+        }
+        File[] damaged = plugin.getDataFolder().listFiles((dir, name) -> name.startsWith(corrupt.getName() + ".damaged-"));
+        int lostCount = players - restored;
+        boolean tailRecovered = damaged != null && damaged.length > 0 && lost != null
+                && lostCount <= ColdArchive.MEMBER_RECORDS && recovered.size() == restored;
+        // После восстановления в архив снова можно дописывать
+        if (lost != null) {
+            recovered.append(List.of(new ColdArchive.Record(lost.uuid, clock.getSeconds(),
+                    new PlayerData(lost.activeSeconds, 0, 0, Map.of()))));
+            ColdArchive.Record record = recovered.find(lost.uuid);
+            if (record == null || record.getData().getTotalTime() != lost.activeSeconds) tailRecovered = false;
+        }
+        System.out.printf("Обрезанный хвост: сохранено %d, потеряно %d (последний блок), восстановление %s%n",
+                restored, lostCount, tailRecovered ? "успешно" : "НЕУДАЧНО");
+
+        // Нечитаемый архив - ошибка, а не отсутствие записи: иначе игрок получил бы пустые данные
+        File directory = new File(plugin.getDataFolder(), "archive-unreadable.dat.gz");
+        directory.mkdir();
+        boolean failedIndexRejected = throwsOnFind(loadArchive(directory), simPlayers.get(0).uuid);
+
+        SimPlayer victim = simPlayers.get(0);
+        Files.write(coldArchive.getFile().toPath(), new byte[0]);
+        boolean preloadRejected = false;
+        try {
+            plugin.preloadPlayerData(victim.uuid);
+        } catch (IOException e) {
+            preloadRejected = true;
+        }
+        boolean loadRejected = false;
+        try {
+            plugin.getOrCreatePlayerData(victim.uuid);
+        } catch (UncheckedIOException e) {
+            loadRejected = plugin.getPlayerData(victim.uuid) == null;
+        }
+        boolean unreadableRejected = failedIndexRejected && preloadRejected && loadRejected;
+        System.out.printf("Нечитаемый архив: индекс %s, предзагрузка %s, загрузка при входе %s%n",
+                failedIndexRejected ? "отклонен" : "ПРИНЯТ КАК ПУСТОЙ",
+                preloadRejected ? "отклонена" : "СОЗДАЛА ПУСТЫЕ ДАННЫЕ",
+                loadRejected ? "отклонена" : "СОЗДАЛА ПУСТЫЕ ДАННЫЕ");
+
+        System.out.printf("Расхождений во времени после архива: %d%n", mismatches);
+        boolean ok = archived == players && compacted && current[0] == players && mismatches == 0
+                && tailRecovered && unreadableRejected;
+        System.out.println(ok ? "Архив сохраняет и восстанавливает данные игроков" : "ОБНАРУЖЕНЫ ОШИБКИ АРХИВА");
+        return ok;
+    }
+
+    // Все вышли и не заходили дольше inactive-days
+    private void archiveInactivePlayers() {
+        clock.setSeconds(clock.getSeconds() + (ARCHIVE_INACTIVE_DAYS + 1) * 86400);
+        plugin.archiveInactivePlayers();
+    }
+
+    // Время офлайн игроков, прочитанное через API, то есть из архива
+    private long countArchivedMismatches(List<SimPlayer> simPlayers) {
+        long mismatches = 0;
+        for (SimPlayer simPlayer : simPlayers) {
+            if (plugin.getPlayerTotalTime(simPlayer.uuid) != simPlayer.activeSeconds) mismatches++;
+        }
+        return mismatches;
+    }
+
+    private ColdArchive loadArchive(File file) {
+        ColdArchive loaded = new ColdArchive(plugin, file);
+        loaded.loadIndexAsync();
+        server.getScheduler().waitAsyncTasksFinished();
+        return loaded;
+    }
+
+    private static boolean throwsOnFind(ColdArchive coldArchive, UUID uuid) {
+        try {
+            coldArchive.find(uuid);
+            return false;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    private static final class Stats {
+        private long[] nanos = new long[1024];
+        private int count;
+        private long totalNanos;
+        private long totalBytes;
+
+        void add(long elapsedNanos, long allocatedBytes) {
+            if (count == nanos.length) nanos = Arrays.copyOf(nanos, count * 2);
+            nanos[count++] = elapsedNanos;
+            totalNanos += elapsedNanos;
+            totalBytes += allocatedBytes;
+        }
+
+        void print(String label) {
+            if (count == 0) return;
+            long[] sorted = Arrays.copyOf(nanos, count);
+            Arrays.sort(sorted);
+            System.out.printf("%s: %d раз, среднее %.2f мс, p50 %.2f мс, p99 %.2f мс, макс %.2f мс, выделено %.1f КБ/раз (%.1f МБ/с)%n",
+                    label, count, totalNanos / 1e6 / count,
+                    sorted[count / 2] / 1e6, sorted[Math.min(count - 1, (int) (count * 0.99))] / 1e6, sorted[count - 1] / 1e6,
+                    totalBytes / 1024.0 / count, totalNanos > 0 ? totalBytes / 1048576.0 / (totalNanos / 1e9) : 0);
+        }
+    }
+}
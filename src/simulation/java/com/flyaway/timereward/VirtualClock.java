@@ -0,0 +1,52 @@
+package com.flyaway.timereward;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * Часы, которые идут только когда их двигает симуляция.
+ */
+public class VirtualClock extends Clock {
+    private final ZoneId zone;
+    private volatile long millis;
+
+    public VirtualClock(long startMillis) {
+        this(startMillis, ZoneOffset.UTC);
+    }
+
+    private VirtualClock(long startMillis, ZoneId zone) {
+        this.millis = startMillis;
+        this.zone = zone;
+    }
+
+    public void setSeconds(long seconds) {
+        if (seconds * 1000 < millis) throw new IllegalArgumentException("Виртуальное время не может идти назад");
+        this.millis = seconds * 1000;
+    }
+
+    public long getSeconds() {
+        return millis / 1000;
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return new VirtualClock(millis, zone);
+    }
+
+    @Override
+    public long millis() {
+        return millis;
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(millis);
+    }
+}